@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb.benchmark;
+
+import org.bson.BsonDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.siddhi.extension.store.mongodb.MongoCompiledCondition;
+import org.wso2.siddhi.extension.store.mongodb.MongoConditionVisitor;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoTableUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks compiling a condition with the {@link MongoConditionVisitor}, which happens once per query, and
+ * resolving the compiled condition with the runtime values of its stream variables, which happens once per event
+ * that reads from or writes to the table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionBenchmark {
+
+    @Param({"1", "5", "20"})
+    private int placeholders;
+
+    private MongoCompiledCondition compiledCondition;
+    private Map<String, Object> conditionParameterMap;
+
+    @Setup
+    public void setup() {
+        this.compiledCondition = this.compileCondition();
+        this.conditionParameterMap = ConditionFixture.buildParameters(this.placeholders);
+    }
+
+    @Benchmark
+    public MongoCompiledCondition compileCondition() {
+        MongoConditionVisitor visitor = new MongoConditionVisitor();
+        ConditionFixture.visitConjunction(visitor, this.placeholders);
+        return new MongoCompiledCondition(visitor.getCompiledCondition(), visitor.getPlaceholders());
+    }
+
+    @Benchmark
+    public BsonDocument resolveCondition() {
+        return MongoTableUtils.resolveCondition(this.compiledCondition, this.conditionParameterMap);
+    }
+}
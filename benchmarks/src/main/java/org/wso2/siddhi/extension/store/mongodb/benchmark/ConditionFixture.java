@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb.benchmark;
+
+import org.wso2.siddhi.extension.store.mongodb.MongoConditionVisitor;
+import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.expression.condition.Compare;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the conditions used by the benchmarks, by driving a {@link MongoConditionVisitor} through the same sequence
+ * of callbacks Siddhi issues for a conjunction such as
+ * 'FooTable.attr0 == StockStream.attr0 and FooTable.attr1 > StockStream.attr1 and ...'.
+ * Each comparison holds one stream variable and hence one placeholder.
+ */
+final class ConditionFixture {
+    private static final String STORE_ID = "FooTable";
+    private static final String STREAM_ID = "StockStream";
+    private static final Compare.Operator[] OPERATORS = {Compare.Operator.EQUAL, Compare.Operator.GREATER_THAN,
+            Compare.Operator.LESS_THAN_EQUAL};
+    private static final Attribute.Type[] TYPES = {Attribute.Type.STRING, Attribute.Type.LONG, Attribute.Type.DOUBLE};
+
+    private ConditionFixture() {
+    }
+
+    /**
+     * Visits a conjunction of the given number of comparisons.
+     *
+     * @param visitor     the visitor to be driven.
+     * @param comparisons the number of comparisons in the conjunction.
+     */
+    static void visitConjunction(MongoConditionVisitor visitor, int comparisons) {
+        if (comparisons == 1) {
+            visitComparison(visitor, 0);
+            return;
+        }
+        visitor.beginVisitAnd();
+        visitor.beginVisitAndLeftOperand();
+        visitConjunction(visitor, comparisons - 1);
+        visitor.endVisitAndLeftOperand();
+        visitor.beginVisitAndRightOperand();
+        visitComparison(visitor, comparisons - 1);
+        visitor.endVisitAndRightOperand();
+        visitor.endVisitAnd();
+    }
+
+    private static void visitComparison(MongoConditionVisitor visitor, int index) {
+        Compare.Operator operator = OPERATORS[index % OPERATORS.length];
+        Attribute.Type type = TYPES[index % TYPES.length];
+        String attributeName = "attr" + index;
+        visitor.beginVisitCompare(operator);
+        visitor.beginVisitCompareLeftOperand(operator);
+        visitor.beginVisitStoreVariable(STORE_ID, attributeName, type);
+        visitor.endVisitStoreVariable(STORE_ID, attributeName, type);
+        visitor.endVisitCompareLeftOperand(operator);
+        visitor.beginVisitCompareRightOperand(operator);
+        visitor.beginVisitStreamVariable(attributeName, STREAM_ID, attributeName, type);
+        visitor.endVisitStreamVariable(attributeName, STREAM_ID, attributeName, type);
+        visitor.endVisitCompareRightOperand(operator);
+        visitor.endVisitCompare(operator);
+    }
+
+    /**
+     * Builds the runtime values of the stream variables of a conjunction built by
+     * {@link #visitConjunction(MongoConditionVisitor, int)}.
+     *
+     * @param comparisons the number of comparisons in the conjunction.
+     * @return the condition parameter map.
+     */
+    static Map<String, Object> buildParameters(int comparisons) {
+        Map<String, Object> parameters = new HashMap<>();
+        for (int i = 0; i < comparisons; i++) {
+            switch (TYPES[i % TYPES.length]) {
+                case STRING:
+                    parameters.put("attr" + i, "WSO2");
+                    break;
+                case LONG:
+                    parameters.put("attr" + i, 100L + i);
+                    break;
+                default:
+                    parameters.put("attr" + i, 55.6 + i);
+                    break;
+            }
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb.benchmark;
+
+import com.mongodb.MongoClient;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.siddhi.extension.store.mongodb.MongoRecordCodec;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks encoding the records written to the table and decoding the documents read from it. The record codec
+ * used by the table is measured against the generic {@link Document} path it replaced, where a record was first
+ * mapped onto a Document by attribute name before being encoded, and read back from a decoded Document field by field.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordCodecBenchmark {
+
+    private List<Attribute> attributes;
+    private Object[] record;
+    private byte[] encodedRecord;
+    private MongoRecordCodec recordCodec;
+    private Codec<Document> documentCodec;
+
+    @Setup
+    public void setup() {
+        this.attributes = Arrays.asList(
+                new Attribute("symbol", Attribute.Type.STRING),
+                new Attribute("price", Attribute.Type.DOUBLE),
+                new Attribute("volume", Attribute.Type.LONG),
+                new Attribute("count", Attribute.Type.INT),
+                new Attribute("available", Attribute.Type.BOOL),
+                new Attribute("exchange", Attribute.Type.STRING));
+        this.record = new Object[]{"WSO2", 55.6, 100L, 10, true, "NYSE"};
+        this.recordCodec = new MongoRecordCodec(this.attributes, MongoClient.getDefaultCodecRegistry());
+        this.documentCodec = MongoClient.getDefaultCodecRegistry().get(Document.class);
+        this.encodedRecord = this.encodeRecord().toByteArray();
+    }
+
+    @Benchmark
+    public BasicOutputBuffer encodeRecord() {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        this.recordCodec.encode(new BsonBinaryWriter(buffer), this.record, EncoderContext.builder().build());
+        return buffer;
+    }
+
+    @Benchmark
+    public BasicOutputBuffer encodeDocument() {
+        Document document = new Document();
+        for (int i = 0; i < this.attributes.size(); i++) {
+            document.append(this.attributes.get(i).getName(), this.record[i]);
+        }
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        this.documentCodec.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+        return buffer;
+    }
+
+    @Benchmark
+    public Object[] decodeRecord() {
+        return this.recordCodec.decode(new BsonBinaryReader(ByteBuffer.wrap(this.encodedRecord)),
+                DecoderContext.builder().build());
+    }
+
+    @Benchmark
+    public Object[] decodeDocument() {
+        Document document = this.documentCodec.decode(new BsonBinaryReader(ByteBuffer.wrap(this.encodedRecord)),
+                DecoderContext.builder().build());
+        Object[] decodedRecord = new Object[this.attributes.size()];
+        for (int i = 0; i < this.attributes.size(); i++) {
+            decodedRecord[i] = document.get(this.attributes.get(i).getName());
+        }
+        return decodedRecord;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoTableUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.BUCKET_COUNT_FIELD;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.BUCKET_RECORDS_FIELD;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.BUCKET_START_FIELD;
+
+/**
+ * A class representing the time-bucketed layout of an append-only MongoDB Event Table. Instead of one document per
+ * record, the records of the same bucket key which fall into the same time span are appended to the '_records' array
+ * of a single bucket document, which also holds the bucket key, the start of the span in '_start' and the number of
+ * records in '_count'. A bucket holds at most 'bucket.max' records, after which a new bucket is started for the span.
+ * <p>
+ * Reads are answered by an aggregation which selects the buckets that can hold matching records, unwinds them and
+ * applies the condition to the records themselves, so that the layout stays transparent to the queries of the table.
+ */
+public class MongoBucketing {
+    private String keyField;
+    private String timeField;
+    private Integer timePosition;
+    private long span;
+    private int maxRecords;
+
+    /**
+     * @param keyField     the document field of the attribute the records are bucketed by.
+     * @param timeField    the document field of the attribute holding the time of a record in milliseconds, or null
+     *                     if records are bucketed by the time they are written at.
+     * @param timePosition the position of the time attribute in a record, or null if there is none.
+     * @param span         the time span of a bucket in milliseconds.
+     * @param maxRecords   the maximum number of records held by a bucket.
+     */
+    public MongoBucketing(String keyField, String timeField, Integer timePosition, long span, int maxRecords) {
+        this.keyField = keyField;
+        this.timeField = timeField;
+        this.timePosition = timePosition;
+        this.span = span;
+        this.maxRecords = maxRecords;
+    }
+
+    /**
+     * Method for building the index which locates the bucket of a key and time.
+     *
+     * @return the index model on the bucket key and the start of the span.
+     */
+    public IndexModel getBucketIndex() {
+        return new IndexModel(new Document(this.keyField, 1).append(BUCKET_START_FIELD, 1));
+    }
+
+    /**
+     * Method for building the write models which append a batch of records to their buckets. The records of a bucket
+     * are pushed together with one upsert per up to 'bucket.max' records, which only matches a bucket with room for
+     * all of them and otherwise starts a new one.
+     *
+     * @param records       the records to be added.
+     * @param recordEncoder the function which encodes a record into the document it is stored as.
+     * @return the write models.
+     */
+    public List<WriteModel<Object[]>> toWriteModels(List<Object[]> records,
+                                                    Function<Object[], BsonDocument> recordEncoder) {
+        long now = System.currentTimeMillis();
+        Map<BsonDocument, BsonArray> bucketRecords = new LinkedHashMap<>();
+        for (Object[] record : records) {
+            BsonDocument document = recordEncoder.apply(record);
+            long time = this.timePosition == null || record[this.timePosition] == null ? now
+                    : ((Number) record[this.timePosition]).longValue();
+            BsonDocument bucket = new BsonDocument(this.keyField,
+                    MongoTableUtils.getFieldValue(document, this.keyField))
+                    .append(BUCKET_START_FIELD, new BsonInt64(time - Math.floorMod(time, this.span)));
+            bucketRecords.computeIfAbsent(bucket, key -> new BsonArray()).add(document);
+        }
+        List<WriteModel<Object[]>> writeModels = new ArrayList<>();
+        UpdateOptions updateOptions = new UpdateOptions().upsert(true);
+        bucketRecords.forEach((bucket, documents) -> {
+            for (int from = 0; from < documents.size(); from += this.maxRecords) {
+                List<BsonValue> chunk = documents.subList(from, Math.min(from + this.maxRecords, documents.size()));
+                BsonDocument filter = bucket.clone().append(BUCKET_COUNT_FIELD,
+                        new BsonDocument(MongoTableConstants.MONGO_COMPARE_LESS_THAN_EQUAL,
+                                new BsonInt32(this.maxRecords - chunk.size())));
+                BsonDocument update = new BsonDocument(MongoTableConstants.MONGO_PUSH,
+                        new BsonDocument(BUCKET_RECORDS_FIELD,
+                                new BsonDocument(MongoTableConstants.MONGO_EACH, new BsonArray(chunk))))
+                        .append(MongoTableConstants.MONGO_INC,
+                                new BsonDocument(BUCKET_COUNT_FIELD, new BsonInt32(chunk.size())));
+                writeModels.add(new UpdateOneModel<>(filter, update, updateOptions));
+            }
+        });
+        return writeModels;
+    }
+
+    /**
+     * Method for building the aggregation pipeline which reads the records matching a filter.
+     *
+     * @param filter the resolved filter on the records.
+     * @return the aggregation pipeline.
+     */
+    public List<BsonDocument> toPipeline(BsonDocument filter) {
+        List<BsonDocument> pipeline = new ArrayList<>();
+        BsonArray bucketConditions = new BsonArray();
+        this.collectBucketConditions(filter, bucketConditions);
+        if (!bucketConditions.isEmpty()) {
+            pipeline.add(new BsonDocument(MongoTableConstants.MONGO_MATCH, bucketConditions.size() == 1 ?
+                    bucketConditions.get(0) : new BsonDocument(MongoTableConstants.MONGO_AND, bucketConditions)));
+        }
+        pipeline.add(new BsonDocument(MongoTableConstants.MONGO_UNWIND, new BsonString("$" + BUCKET_RECORDS_FIELD)));
+        pipeline.add(new BsonDocument(MongoTableConstants.MONGO_REPLACE_ROOT, new BsonDocument(
+                MongoTableConstants.MONGO_NEW_ROOT, new BsonString("$" + BUCKET_RECORDS_FIELD))));
+        if (!filter.isEmpty()) {
+            pipeline.add(new BsonDocument(MongoTableConstants.MONGO_MATCH, filter));
+        }
+        return pipeline;
+    }
+
+    /**
+     * Method for collecting the conditions which select the buckets that can hold records matching a filter, from
+     * the conjuncts of the filter on the bucket key, which are shared by all the records of a bucket, and on the time
+     * attribute, which bound the start of the span of a bucket.
+     *
+     * @param filter           the resolved filter on the records.
+     * @param bucketConditions the list to which the conditions on the buckets are added.
+     */
+    private void collectBucketConditions(BsonDocument filter, BsonArray bucketConditions) {
+        for (Map.Entry<String, BsonValue> clause : filter.entrySet()) {
+            if (clause.getKey().equals(MongoTableConstants.MONGO_AND)) {
+                for (BsonValue subFilter : clause.getValue().asArray()) {
+                    this.collectBucketConditions(subFilter.asDocument(), bucketConditions);
+                }
+            } else if (clause.getKey().equals(this.keyField)) {
+                bucketConditions.add(new BsonDocument(clause.getKey(), clause.getValue()));
+            } else if (clause.getKey().equals(this.timeField)) {
+                this.addTimeBounds(clause.getValue(), bucketConditions);
+            }
+        }
+    }
+
+    /**
+     * Method for adding the bounds of the bucket start implied by a condition on the time attribute of the records.
+     * A record of time t is held by the bucket starting at s only when s <= t < s + span.
+     *
+     * @param condition        the condition on the time attribute.
+     * @param bucketConditions the list to which the conditions on the buckets are added.
+     */
+    private void addTimeBounds(BsonValue condition, BsonArray bucketConditions) {
+        if (condition.isNumber()) {
+            this.addTimeBound(MongoTableConstants.MONGO_COMPARE_GREATER_THAN_EQUAL, condition, bucketConditions);
+            this.addTimeBound(MongoTableConstants.MONGO_COMPARE_LESS_THAN_EQUAL, condition, bucketConditions);
+            return;
+        }
+        if (!condition.isDocument()) {
+            return;
+        }
+        for (Map.Entry<String, BsonValue> operator : condition.asDocument().entrySet()) {
+            if (operator.getKey().equals(MongoTableConstants.MONGO_COMPARE_EQUAL)) {
+                this.addTimeBounds(operator.getValue(), bucketConditions);
+            } else {
+                this.addTimeBound(operator.getKey(), operator.getValue(), bucketConditions);
+            }
+        }
+    }
+
+    private void addTimeBound(String operator, BsonValue value, BsonArray bucketConditions) {
+        if (!value.isNumber()) {
+            return;
+        }
+        switch (operator) {
+            case MongoTableConstants.MONGO_COMPARE_GREATER_THAN:
+            case MongoTableConstants.MONGO_COMPARE_GREATER_THAN_EQUAL:
+                long lowerBound = (long) Math.floor(value.asNumber().doubleValue()) - this.span;
+                bucketConditions.add(new BsonDocument(BUCKET_START_FIELD, new BsonDocument(
+                        MongoTableConstants.MONGO_COMPARE_GREATER_THAN, new BsonInt64(lowerBound))));
+                break;
+            case MongoTableConstants.MONGO_COMPARE_LESS_THAN:
+            case MongoTableConstants.MONGO_COMPARE_LESS_THAN_EQUAL:
+                bucketConditions.add(new BsonDocument(BUCKET_START_FIELD, new BsonDocument(operator, value)));
+                break;
+            default:
+                break;
+        }
+    }
+}
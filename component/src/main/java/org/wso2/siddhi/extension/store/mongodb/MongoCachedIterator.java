@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import org.wso2.siddhi.core.table.record.RecordIterator;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A class representing a RecordIterator over the records of the query cache of the MongoDB Event Table. It either
+ * serves the records of a cached result, or reads the records of a {@link MongoIterator} as they are consumed and
+ * hands them to the cache once all of them were read. Records are not read ahead of the consumer, so the batch size
+ * and prefetching of the underlying iterator are kept. Copies of the records are returned so that the cached records
+ * are never modified.
+ */
+public class MongoCachedIterator implements RecordIterator<Object[]> {
+    private List<Object[]> records;
+    private MongoIterator remainingRecords;
+    private Consumer<List<Object[]>> cacheWriter;
+    private int position;
+
+    /**
+     * @param records the cached records.
+     */
+    public MongoCachedIterator(List<Object[]> records) {
+        this.records = records;
+    }
+
+    /**
+     * @param remainingRecords the iterator of the records which are read from the collection.
+     * @param cacheWriter      the consumer which caches the records once all of them were read. It is not called
+     *                         when the iterator is closed before the end, or more than
+     *                         {@link MongoTableConstants#CACHE_MAX_RECORDS_PER_ENTRY} records are read.
+     */
+    public MongoCachedIterator(MongoIterator remainingRecords, Consumer<List<Object[]>> cacheWriter) {
+        this.records = new ArrayList<>();
+        this.remainingRecords = remainingRecords;
+        this.cacheWriter = cacheWriter;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.position < this.records.size()) {
+            return true;
+        }
+        if (this.remainingRecords == null) {
+            return false;
+        }
+        if (this.remainingRecords.hasNext()) {
+            return true;
+        }
+        if (this.cacheWriter != null) {
+            this.cacheWriter.accept(this.records);
+            this.cacheWriter = null;
+        }
+        return false;
+    }
+
+    @Override
+    public Object[] next() {
+        if (this.position < this.records.size()) {
+            return this.records.get(this.position++).clone();
+        }
+        if (this.remainingRecords != null && this.remainingRecords.hasNext()) {
+            Object[] record = this.remainingRecords.next();
+            if (this.cacheWriter == null) {
+                return record;
+            }
+            if (this.records.size() < MongoTableConstants.CACHE_MAX_RECORDS_PER_ENTRY) {
+                this.records.add(record);
+                this.position++;
+                return record.clone();
+            }
+            this.cacheWriter = null;
+            this.records = Collections.emptyList();
+            this.position = 0;
+            return record;
+        }
+        throw new NoSuchElementException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.remainingRecords != null) {
+            this.remainingRecords.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A process-wide registry of the Mongo clients used by the MongoDB Event Tables. Tables connecting with equivalent
+ * MongoDB URIs share a single reference-counted {@link MongoClient}, and with it the connection pool and the server
+ * monitor threads. The client is closed when the last table using it releases it.
+ */
+public class MongoClientRegistry {
+    private static final Map<List<Object>, ClientReference> CLIENTS = new HashMap<>();
+
+    private MongoClientRegistry() {
+        //Prevent Initialization.
+    }
+
+    /**
+     * Method for acquiring the shared client for a MongoDB URI, creating it when no table is using it yet.
+     *
+     * @param mongoClientURI the MongoDB URI to connect with.
+     * @return the shared {@link MongoClient} instance.
+     */
+    public static synchronized MongoClient acquire(MongoClientURI mongoClientURI) {
+        List<Object> key = normalise(mongoClientURI);
+        ClientReference reference = CLIENTS.get(key);
+        if (reference == null) {
+            reference = new ClientReference(new MongoClient(mongoClientURI));
+            CLIENTS.put(key, reference);
+        }
+        reference.referenceCount++;
+        return reference.mongoClient;
+    }
+
+    /**
+     * Method for releasing a client acquired for a MongoDB URI. The client is closed when it is no longer used.
+     *
+     * @param mongoClientURI the MongoDB URI the client was acquired with.
+     */
+    public static synchronized void release(MongoClientURI mongoClientURI) {
+        List<Object> key = normalise(mongoClientURI);
+        ClientReference reference = CLIENTS.get(key);
+        if (reference != null && --reference.referenceCount == 0) {
+            CLIENTS.remove(key);
+            reference.mongoClient.close();
+        }
+    }
+
+    /**
+     * Method for building the key which identifies equivalent MongoDB URIs, i.e. URIs with the same set of hosts,
+     * credentials and options regardless of their order or the database they point to.
+     *
+     * @param mongoClientURI the MongoDB URI to be normalised.
+     * @return the key of the URI.
+     */
+    private static List<Object> normalise(MongoClientURI mongoClientURI) {
+        List<String> hosts = new ArrayList<>(mongoClientURI.getHosts());
+        Collections.sort(hosts);
+        String uri = mongoClientURI.getURI();
+        int optionsIndex = uri.indexOf('?');
+        List<String> options = optionsIndex < 0 ? Collections.emptyList() :
+                Arrays.asList(uri.substring(optionsIndex + 1).split("[&;]"));
+        options = new ArrayList<>(options);
+        Collections.sort(options);
+        return Arrays.asList(hosts, mongoClientURI.getCredentials(), options);
+    }
+
+    /**
+     * Class representing a shared client and the number of tables using it.
+     */
+    private static class ClientReference {
+        private MongoClient mongoClient;
+        private int referenceCount;
+
+        private ClientReference(MongoClient mongoClient) {
+            this.mongoClient = mongoClient;
+        }
+    }
+}
@@ -17,39 +17,60 @@
  */
 package org.wso2.siddhi.extension.store.mongodb;
 
+import org.bson.BsonDocument;
 import org.wso2.siddhi.core.util.collection.operator.CompiledCondition;
+import org.wso2.siddhi.extension.store.mongodb.util.Placeholder;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Implementation class of {@link CompiledCondition} corresponding to the MongoDB Event Table.
- * Maintains the condition string returned by the ConditionVisitor as well as a map of parameters to be used at runtime.
+ * Maintains the condition template built by the ConditionVisitor as well as the placeholders to be filled at runtime.
+ * Instances are immutable: the template is never modified after compilation, as every resolution of the condition
+ * returns a copy of it, whether or not there are placeholders to bind. A compiled condition can thus be shared
+ * between threads and cloned without being compiled again.
  */
 public class MongoCompiledCondition implements CompiledCondition {
 
-    private String compiledQuery;
-    private Map<String, Object> placeholders;
+    private final BsonDocument compiledQuery;
+    private final List<Placeholder> placeholders;
 
-
-    public MongoCompiledCondition(String compiledQuery, Map<String, Object> parameters) {
+    public MongoCompiledCondition(BsonDocument compiledQuery, List<Placeholder> placeholders) {
         this.compiledQuery = compiledQuery;
-        this.placeholders = parameters;
+        this.placeholders = Collections.unmodifiableList(new ArrayList<>(placeholders));
+    }
+
+    private MongoCompiledCondition(MongoCompiledCondition compiledCondition) {
+        this.compiledQuery = compiledCondition.compiledQuery;
+        this.placeholders = compiledCondition.placeholders;
     }
 
+    /**
+     * Method which is called by the Siddhi runtime for every partition key instance using the condition. The clone
+     * shares the template and the placeholders with this condition, as neither holds per-instance state.
+     *
+     * @param key the partition key of the instance.
+     * @return the clone of the compiled condition.
+     */
     @Override
     public CompiledCondition cloneCompiledCondition(String key) {
-        return null;
+        return new MongoCompiledCondition(this);
     }
 
-    public String getCompiledQuery() {
+    /**
+     * @return the condition template, which is shared and must not be modified.
+     */
+    public BsonDocument getCompiledQuery() {
         return compiledQuery;
     }
 
     public String toString() {
-        return getCompiledQuery();
+        return getCompiledQuery().toJson();
     }
 
-    public Map<String, Object> getPlaceholders() {
+    public List<Placeholder> getPlaceholders() {
         return placeholders;
     }
 
@@ -17,76 +17,152 @@
  */
 package org.wso2.siddhi.extension.store.mongodb;
 
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonNull;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonString;
+import org.bson.BsonValue;
 import org.wso2.siddhi.core.table.record.BaseConditionVisitor;
 import org.wso2.siddhi.extension.store.mongodb.exception.MongoTableException;
-import org.wso2.siddhi.extension.store.mongodb.util.Constant;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoFilterNormalizer;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoPrimaryKey;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoTableUtils;
+import org.wso2.siddhi.extension.store.mongodb.util.Placeholder;
 import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.exception.ExecutionPlanValidationException;
 import org.wso2.siddhi.query.api.expression.condition.Compare;
 
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_AND_FILTER;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_ADD;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_AND;
 import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_EQUAL;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_FILTER;
 import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_GREATER_THAN;
 import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_GREATER_THAN_EQUAL;
 import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_LESS_THAN;
 import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_LESS_THAN_EQUAL;
 import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_NOT_EQUAL;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_IS_NULL_FILTER;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_DIVIDE;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_EXPR;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_LITERAL;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_MOD;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_MULTIPLY;
 import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_NOT;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_NOT_FILTER;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_OR_FILTER;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.PLACEHOLDER_COMPARE_OPERATOR;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.PLACEHOLDER_FIELD_NAME;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.PLACEHOLDER_LEFT_OPERAND;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.PLACEHOLDER_OPERAND;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.PLACEHOLDER_RIGHT_OPERAND;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.REG_EXPRESSION;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.REG_SIMPLE_EXPRESSION;
-import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.REG_STREAMVAR_OR_CONST;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_OR;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_SUBTRACT;
 
 /**
  * Class which is used by the Siddhi runtime for instructions on converting the SiddhiQL condition to the condition
  * format understood by the MongoDB.
+ * The condition is built as a {@link BsonDocument} template in which stream variables are kept as placeholders, so
+ * that resolving the condition at runtime only requires writing the values into a copy of the template.
  */
 public class MongoConditionVisitor extends BaseConditionVisitor {
-    private Stack<String> conditionOperands;
-    private Map<String, Object> placeholders;
-
+    private static final Map<String, FunctionTranslation> FUNCTION_TRANSLATIONS = new ConcurrentHashMap<>();
+
+    static {
+        registerFunctionTranslator("str", "contains", 0,
+                arguments -> toRegex("str:contains", arguments, MongoTableUtils::quoteRegex));
+        registerFunctionTranslator("str", "startsWith", 0, arguments -> toRegex("str:startsWith", arguments,
+                literal -> "^" + MongoTableUtils.quoteRegex(literal)));
+        registerFunctionTranslator("str", "endsWith", 0, arguments -> toRegex("str:endsWith", arguments,
+                literal -> MongoTableUtils.quoteRegex(literal) + "$"));
+        registerFunctionTranslator("str", "regexp", 0,
+                arguments -> toRegex("str:regexp", arguments, regex -> anchor(regex, true)));
+        registerFunctionTranslator("regex", "matches", 1,
+                arguments -> toRegex("regex:matches", arguments, regex -> anchor(regex, true)));
+        registerFunctionTranslator("regex", "lookingAt", 1,
+                arguments -> toRegex("regex:lookingAt", arguments, regex -> anchor(regex, false)));
+        registerFunctionTranslator("regex", "find", 1,
+                arguments -> toRegex("regex:find", arguments, regex -> regex));
+    }
+
+    private Stack<Operand> conditionOperands;
+    private Map<BsonValue, Attribute> placeholderValues;
+
+    private BsonDocument compiledCondition;
+    private List<Placeholder> placeholders;
+
+    private MongoPrimaryKey primaryKey;
     private int streamVarCount;
-    private int constantCount;
+    private Deque<Integer> functionOperandDepths;
 
     public MongoConditionVisitor() {
+        this(null);
+    }
+
+    /**
+     * @param primaryKey the primary key stored as '_id', to whose fields the condition is rewritten, or null if the
+     *                   attributes are stored in fields of their own name.
+     */
+    public MongoConditionVisitor(MongoPrimaryKey primaryKey) {
+        this.primaryKey = primaryKey;
         this.streamVarCount = 0;
-        this.constantCount = 0;
         this.conditionOperands = new Stack<>();
-        this.placeholders = new HashMap<>();
-    }
-
-    public String getCompiledCondition() {
-        String compiledCondition = this.conditionOperands.pop();
-        for (Map.Entry<String, Object> entry : this.placeholders.entrySet()) {
-            if (entry.getValue() instanceof Constant) {
-                Constant constant = (Constant) entry.getValue();
-                if (constant.getType().equals(Attribute.Type.STRING)) {
-                    compiledCondition = compiledCondition.replaceAll(entry.getKey(),
-                            "'" + constant.getValue().toString() + "'");
-                } else {
-                    compiledCondition = compiledCondition.replaceAll(entry.getKey(),
-                            constant.getValue().toString());
-                }
-                this.placeholders.remove(entry.getKey());
+        this.placeholderValues = new IdentityHashMap<>();
+        this.functionOperandDepths = new ArrayDeque<>();
+    }
+
+    /**
+     * Method for plugging in the translation of a boolean Siddhi function, so that table conditions calling it are
+     * evaluated by the MongoDB server. Registering a function which is already known replaces its translation.
+     *
+     * @param namespace      the namespace of the function, or an empty string for functions without one.
+     * @param functionName   the name of the function.
+     * @param attributeIndex the index of the parameter which must be the table attribute being filtered.
+     * @param translator     the translator which builds the filter on the field of the attribute.
+     */
+    public static void registerFunctionTranslator(String namespace, String functionName, int attributeIndex,
+                                                  MongoFunctionTranslator translator) {
+        FUNCTION_TRANSLATIONS.put(getFunctionKey(namespace, functionName),
+                new FunctionTranslation(attributeIndex, translator));
+    }
+
+    public BsonDocument getCompiledCondition() {
+        if (this.compiledCondition == null) {
+            Operand operand = this.conditionOperands.pop();
+            if (operand.type == OperandType.EXPRESSION) {
+                this.compiledCondition = operand.value.asDocument();
+            } else if (operand.type == OperandType.CONSTANT && operand.value.isBoolean() &&
+                    operand.value.asBoolean().getValue()) {
+                this.compiledCondition = new BsonDocument();
+            } else {
+                throw new MongoTableException("MongoDB Event Table found operand '" + operand + "' as the " +
+                        "condition. The Mongo Event table only supports conditions which are expressions. Please " +
+                        "check your query and try again.");
+            }
+            if (this.primaryKey != null) {
+                this.compiledCondition = this.primaryKey.rewriteFilter(this.compiledCondition);
             }
+            Set<BsonValue> opaqueValues = Collections.newSetFromMap(new IdentityHashMap<>());
+            this.placeholderValues.forEach((placeholder, variable) -> {
+                if (variable.getType() == Attribute.Type.OBJECT) {
+                    opaqueValues.add(placeholder);
+                }
+            });
+            this.compiledCondition = new MongoFilterNormalizer(opaqueValues).normalize(this.compiledCondition);
+            this.placeholders = new ArrayList<>();
+            this.collectPlaceholders(this.compiledCondition, new ArrayDeque<>());
         }
-        return compiledCondition;
+        return this.compiledCondition;
     }
 
-    public Map<String, Object> getPlaceholders() {
+    public List<Placeholder> getPlaceholders() {
+        this.getCompiledCondition();
         return placeholders;
     }
 
@@ -96,14 +172,13 @@ public class MongoConditionVisitor extends BaseConditionVisitor {
 
     @Override
     public void endVisitAnd() {
-        String rightOperand = this.conditionOperands.pop();
-        String leftOperand = this.conditionOperands.pop();
-        if (rightOperand.matches(REG_EXPRESSION) &&
-                leftOperand.matches(REG_EXPRESSION)) {
-            String andFilter = MONGO_AND_FILTER
-                    .replace(PLACEHOLDER_LEFT_OPERAND, leftOperand)
-                    .replace(PLACEHOLDER_RIGHT_OPERAND, rightOperand);
-            this.conditionOperands.push(andFilter);
+        Operand rightOperand = this.conditionOperands.pop();
+        Operand leftOperand = this.conditionOperands.pop();
+        if (rightOperand.type == OperandType.EXPRESSION &&
+                leftOperand.type == OperandType.EXPRESSION) {
+            BsonDocument andFilter = new BsonDocument(MONGO_AND,
+                    new BsonArray(Arrays.asList(leftOperand.value, rightOperand.value)));
+            this.conditionOperands.push(Operand.expression(andFilter));
         } else {
             throw new MongoTableException("MongoDB Event Table found operands '" + leftOperand + "' and '" +
                     rightOperand + "' for AND operation. Mongo Event table only supports AND operation between " +
@@ -133,14 +208,13 @@ public class MongoConditionVisitor extends BaseConditionVisitor {
 
     @Override
     public void endVisitOr() {
-        String rightOperand = this.conditionOperands.pop();
-        String leftOperand = this.conditionOperands.pop();
-        if (rightOperand.matches(REG_EXPRESSION) &&
-                leftOperand.matches(REG_EXPRESSION)) {
-            String orFilter = MONGO_OR_FILTER
-                    .replace(PLACEHOLDER_LEFT_OPERAND, leftOperand)
-                    .replace(PLACEHOLDER_RIGHT_OPERAND, rightOperand);
-            this.conditionOperands.push(orFilter);
+        Operand rightOperand = this.conditionOperands.pop();
+        Operand leftOperand = this.conditionOperands.pop();
+        if (rightOperand.type == OperandType.EXPRESSION &&
+                leftOperand.type == OperandType.EXPRESSION) {
+            BsonDocument orFilter = new BsonDocument(MONGO_OR,
+                    new BsonArray(Arrays.asList(leftOperand.value, rightOperand.value)));
+            this.conditionOperands.push(Operand.expression(orFilter));
         } else {
             throw new MongoTableException("MongoDB Event Table found operands '" + leftOperand + "' and '" +
                     rightOperand + "' for OR operation.The Mongo Event table only supports OR operation between " +
@@ -170,21 +244,26 @@ public class MongoConditionVisitor extends BaseConditionVisitor {
 
     @Override
     public void endVisitNot() {
-        String operand = this.conditionOperands.pop();
-        Pattern pattern = Pattern.compile(REG_SIMPLE_EXPRESSION);
-        Matcher matcher = pattern.matcher(operand);
-        if (matcher.find()) {
-            String fieldName = matcher.group(1);
-            operand = operand.replace(fieldName, MONGO_NOT);
-            String notFilter = MONGO_NOT_FILTER
-                    .replace(PLACEHOLDER_FIELD_NAME, fieldName)
-                    .replace(PLACEHOLDER_OPERAND, operand);
-            this.conditionOperands.push(notFilter);
-        } else {
-            throw new MongoTableException("MongoDB Event Table found operand '" + operand + "' for NOT operation. " +
-                    "The Mongo Event table only supports NOT operation on simple expression such as compare and null " +
-                    "check. Please check your query and try again.");
+        Operand operand = this.conditionOperands.pop();
+        if (operand.type == OperandType.EXPRESSION && operand.value.asDocument().size() == 1) {
+            BsonDocument simpleExpression = operand.value.asDocument();
+            String fieldName = simpleExpression.keySet().iterator().next();
+            BsonValue fieldFilter = simpleExpression.get(fieldName);
+            if (!fieldName.startsWith("$") && (fieldFilter.isDocument() || fieldFilter.isRegularExpression())) {
+                BsonDocument notFilter = new BsonDocument(fieldName, new BsonDocument(MONGO_NOT, fieldFilter));
+                this.conditionOperands.push(Operand.expression(notFilter));
+                return;
+            }
+            if (fieldName.equals(MONGO_EXPR)) {
+                BsonDocument notFilter = new BsonDocument(MONGO_EXPR,
+                        new BsonDocument(MONGO_NOT, new BsonArray(Collections.singletonList(fieldFilter))));
+                this.conditionOperands.push(Operand.expression(notFilter));
+                return;
+            }
         }
+        throw new MongoTableException("MongoDB Event Table found operand '" + operand + "' for NOT operation. " +
+                "The Mongo Event table only supports NOT operation on simple expression such as compare and null " +
+                "check. Please check your query and try again.");
     }
 
     @Override
@@ -193,59 +272,23 @@ public class MongoConditionVisitor extends BaseConditionVisitor {
 
     @Override
     public void endVisitCompare(Compare.Operator operator) {
-        String compareFilter = MONGO_COMPARE_FILTER;
-        switch (operator) {
-            case EQUAL:
-                compareFilter = compareFilter
-                        .replace(PLACEHOLDER_COMPARE_OPERATOR, MONGO_COMPARE_EQUAL);
-                break;
-            case GREATER_THAN:
-                compareFilter = compareFilter
-                        .replace(PLACEHOLDER_COMPARE_OPERATOR, MONGO_COMPARE_GREATER_THAN);
-                break;
-            case GREATER_THAN_EQUAL:
-                compareFilter = compareFilter
-                        .replace(PLACEHOLDER_COMPARE_OPERATOR, MONGO_COMPARE_GREATER_THAN_EQUAL);
-                break;
-            case LESS_THAN:
-                compareFilter = compareFilter
-                        .replace(PLACEHOLDER_COMPARE_OPERATOR, MONGO_COMPARE_LESS_THAN);
-                break;
-            case LESS_THAN_EQUAL:
-                compareFilter = compareFilter
-                        .replace(PLACEHOLDER_COMPARE_OPERATOR, MONGO_COMPARE_LESS_THAN_EQUAL);
-                break;
-            case NOT_EQUAL:
-                compareFilter = compareFilter
-                        .replace(PLACEHOLDER_COMPARE_OPERATOR, MONGO_COMPARE_NOT_EQUAL);
-                break;
-            default:
-                throw new MongoTableException("MongoDB Event Table found unknown operator '" + operator + "' for " +
-                        "COMPARE operation. Please check your query and try again.");
-        }
-
-        String rightOperand = this.conditionOperands.pop();
-        String leftOperand = this.conditionOperands.pop();
-        if (!rightOperand.matches(REG_EXPRESSION) &&
-                !leftOperand.matches(REG_EXPRESSION)) {
-            if (leftOperand.matches(REG_STREAMVAR_OR_CONST) !=
-                    rightOperand.matches(REG_STREAMVAR_OR_CONST)) {
-                if (!rightOperand.matches(REG_STREAMVAR_OR_CONST)) {
-                    compareFilter = compareFilter
-                            .replace(PLACEHOLDER_LEFT_OPERAND, rightOperand)
-                            .replace(PLACEHOLDER_RIGHT_OPERAND, leftOperand);
-                } else {
-                    compareFilter = compareFilter
-                            .replace(PLACEHOLDER_LEFT_OPERAND, leftOperand)
-                            .replace(PLACEHOLDER_RIGHT_OPERAND, rightOperand);
-                }
-                this.conditionOperands.push(compareFilter);
+        Operand rightOperand = this.conditionOperands.pop();
+        Operand leftOperand = this.conditionOperands.pop();
+        if (rightOperand.type != OperandType.EXPRESSION &&
+                leftOperand.type != OperandType.EXPRESSION) {
+            BsonDocument compareFilter;
+            if (leftOperand.type == OperandType.STORE_VARIABLE && rightOperand.isValue()) {
+                compareFilter = new BsonDocument(leftOperand.name,
+                        new BsonDocument(getCompareOperator(operator, false), rightOperand.value));
+            } else if (rightOperand.type == OperandType.STORE_VARIABLE && leftOperand.isValue()) {
+                compareFilter = new BsonDocument(rightOperand.name,
+                        new BsonDocument(getCompareOperator(operator, true), leftOperand.value));
             } else {
-                throw new MongoTableException("MongoDB Event Table found operands '" + leftOperand + "' and '" +
-                        rightOperand + "' for COMPARE operation. The Mongo Event table only supports COMPARE " +
-                        "operation between table attribute and Stream variable/ Constant. Please check your query " +
-                        "and try again.");
+                compareFilter = new BsonDocument(MONGO_EXPR, new BsonDocument(getCompareOperator(operator, false),
+                        new BsonArray(Arrays.asList(this.toAggregationOperand(leftOperand),
+                                this.toAggregationOperand(rightOperand)))));
             }
+            this.conditionOperands.push(Operand.expression(compareFilter));
         } else {
             throw new MongoTableException("MongoDB Event Table found operands '" + leftOperand + "' and '" +
                     rightOperand + "' for COMPARE operation. The Mongo Event table does not supports COMPARE " +
@@ -278,12 +321,11 @@ public class MongoConditionVisitor extends BaseConditionVisitor {
 
     @Override
     public void endVisitIsNull(String streamId) {
-        String operand = this.conditionOperands.pop();
-        if (!operand.matches(REG_EXPRESSION) &&
-                !operand.matches(REG_STREAMVAR_OR_CONST)) {
-            String isNullFilter = MONGO_IS_NULL_FILTER
-                    .replace(PLACEHOLDER_OPERAND, operand);
-            this.conditionOperands.push(isNullFilter);
+        Operand operand = this.conditionOperands.pop();
+        if (operand.type == OperandType.STORE_VARIABLE) {
+            BsonDocument isNullFilter = new BsonDocument(operand.name,
+                    new BsonDocument(MONGO_COMPARE_EQUAL, BsonNull.VALUE));
+            this.conditionOperands.push(Operand.expression(isNullFilter));
         } else {
             throw new MongoTableException("MongoDB Event Table found operand '" + operand + "' for is NULL operation." +
                     " The Mongo Event table only supports is NULL operation on a table attribute. Please check your" +
@@ -298,16 +340,31 @@ public class MongoConditionVisitor extends BaseConditionVisitor {
 
     @Override
     public void endVisitIn(String storeId) {
+        throw new ExecutionPlanValidationException("MongoDB Event Table found an IN operation on the table '" +
+                storeId + "'. The Mongo Event table does not support IN operations, as the membership in another " +
+                "table can not be checked by the MongoDB server. Please check your query and try again.");
     }
 
     @Override
     public void beginVisitMath(MathOperator mathOperator) {
-        throw new MongoTableException("The Mongo Event table do not support MATH operations. " +
-                " Please check your query and try again.");
     }
 
     @Override
     public void endVisitMath(MathOperator mathOperator) {
+        Operand rightOperand = this.conditionOperands.pop();
+        Operand leftOperand = this.conditionOperands.pop();
+        if (rightOperand.type == OperandType.EXPRESSION || leftOperand.type == OperandType.EXPRESSION) {
+            throw new MongoTableException("MongoDB Event Table found operands '" + leftOperand + "' and '" +
+                    rightOperand + "' for MATH operation. The Mongo Event table only supports MATH operation " +
+                    "between table attributes, Stream variables, Constants and other MATH operations. Please " +
+                    "check your query and try again.");
+        }
+        String mathOperatorName = getMathOperator(mathOperator);
+        BsonDocument mathExpression = new BsonDocument(mathOperatorName,
+                new BsonArray(Arrays.asList(this.toAggregationOperand(leftOperand),
+                        this.toAggregationOperand(rightOperand))));
+        this.conditionOperands.push(new Operand(OperandType.MATH,
+                "(" + leftOperand + " " + mathOperatorName + " " + rightOperand + ")", mathExpression));
     }
 
     @Override
@@ -328,13 +385,46 @@ public class MongoConditionVisitor extends BaseConditionVisitor {
 
     @Override
     public void beginVisitAttributeFunction(String namespace, String functionName) {
-        throw new MongoTableException("The Mongo Event table do not support Attribute functions. " +
-                " Please check your query and try again.");
+        if (!FUNCTION_TRANSLATIONS.containsKey(getFunctionKey(namespace, functionName))) {
+            throw new MongoTableException("The Mongo Event table does not support the attribute function '" +
+                    getFunctionKey(namespace, functionName) + "'. Supported functions are " +
+                    new TreeSet<>(FUNCTION_TRANSLATIONS.keySet()) + ". Please check your query and try again.");
+        }
+        this.functionOperandDepths.push(this.conditionOperands.size());
     }
 
-
     @Override
     public void endVisitAttributeFunction(String namespace, String functionName) {
+        String functionKey = getFunctionKey(namespace, functionName);
+        FunctionTranslation translation = FUNCTION_TRANSLATIONS.get(functionKey);
+        int depth = this.functionOperandDepths.pop();
+        LinkedList<Operand> parameters = new LinkedList<>();
+        while (this.conditionOperands.size() > depth) {
+            parameters.addFirst(this.conditionOperands.pop());
+        }
+        if (parameters.size() <= translation.attributeIndex
+                || parameters.get(translation.attributeIndex).type != OperandType.STORE_VARIABLE) {
+            throw new MongoTableException("The Mongo Event table only supports the attribute function '" +
+                    functionKey + "' with a table attribute as parameter " + translation.attributeIndex + ". " +
+                    "Please check your query and try again.");
+        }
+        List<BsonValue> arguments = new ArrayList<>();
+        for (int i = 0; i < parameters.size(); i++) {
+            Operand parameter = parameters.get(i);
+            if (i == translation.attributeIndex) {
+                continue;
+            }
+            if (parameter.type != OperandType.CONSTANT) {
+                throw new MongoTableException("MongoDB Event Table found operand '" + parameter + "' as a " +
+                        "parameter of the attribute function '" + functionKey + "'. The Mongo Event table only " +
+                        "supports constants as the parameters other than the table attribute. Please check your " +
+                        "query and try again.");
+            }
+            arguments.add(parameter.value);
+        }
+        String fieldName = parameters.get(translation.attributeIndex).name;
+        this.conditionOperands.push(Operand.expression(
+                new BsonDocument(fieldName, translation.translator.translate(arguments))));
     }
 
     @Override
@@ -348,8 +438,9 @@ public class MongoConditionVisitor extends BaseConditionVisitor {
     @Override
     public void beginVisitStreamVariable(String id, String streamId, String attributeName, Attribute.Type type) {
         String name = this.generateStreamVarName();
-        this.placeholders.put(name, new Attribute(id, type));
-        conditionOperands.push(name);
+        BsonValue placeholder = new BsonString(name);
+        this.placeholderValues.put(placeholder, new Attribute(id, type));
+        this.conditionOperands.push(new Operand(OperandType.STREAM_VARIABLE, name, placeholder));
     }
 
     @Override
@@ -358,9 +449,8 @@ public class MongoConditionVisitor extends BaseConditionVisitor {
 
     @Override
     public void beginVisitConstant(Object value, Attribute.Type type) {
-        String name = this.generateConstantName();
-        this.placeholders.put(name, new Constant(value, type));
-        conditionOperands.push(name);
+        this.conditionOperands.push(new Operand(OperandType.CONSTANT, String.valueOf(value),
+                MongoTableUtils.toBsonValue(value, type)));
     }
 
     @Override
@@ -369,7 +459,9 @@ public class MongoConditionVisitor extends BaseConditionVisitor {
 
     @Override
     public void beginVisitStoreVariable(String storeId, String attributeName, Attribute.Type type) {
-        this.conditionOperands.push(attributeName);
+        String fieldName = this.primaryKey == null ? attributeName : this.primaryKey.toDocumentField(attributeName);
+        this.conditionOperands.push(new Operand(OperandType.STORE_VARIABLE, attributeName,
+                new BsonString("$" + fieldName)));
     }
 
     @Override
@@ -388,13 +480,187 @@ public class MongoConditionVisitor extends BaseConditionVisitor {
     }
 
     /**
-     * Method for generating a temporary placeholder for constants.
+     * Method for converting an operand to an operand of an aggregation expression, as used within '$expr'. Table
+     * attributes become field paths, and stream variables and constants which could be taken for a field path or an
+     * expression are wrapped in '$literal'.
      *
-     * @return a placeholder string of known format.
+     * @param operand the operand of the condition.
+     * @return the aggregation expression operand.
      */
-    private String generateConstantName() {
-        String name = "const" + this.constantCount;
-        this.constantCount++;
-        return name;
+    private BsonValue toAggregationOperand(Operand operand) {
+        switch (operand.type) {
+            case STORE_VARIABLE:
+            case MATH:
+                return operand.value;
+            case CONSTANT:
+                if (operand.value.isNumber() || operand.value.isBoolean() || operand.value.isNull()) {
+                    return operand.value;
+                }
+                return new BsonDocument(MONGO_LITERAL, operand.value);
+            default:
+                return new BsonDocument(MONGO_LITERAL, operand.value);
+        }
+    }
+
+    /**
+     * Method for returning the MongoDB arithmetic expression operator for a Siddhi math operator.
+     *
+     * @param mathOperator the Siddhi math operator.
+     * @return the MongoDB arithmetic expression operator.
+     */
+    private static String getMathOperator(MathOperator mathOperator) {
+        switch (mathOperator) {
+            case ADD:
+                return MONGO_ADD;
+            case SUBTRACT:
+                return MONGO_SUBTRACT;
+            case MULTIPLY:
+                return MONGO_MULTIPLY;
+            case DIVIDE:
+                return MONGO_DIVIDE;
+            case MOD:
+                return MONGO_MOD;
+            default:
+                throw new MongoTableException("MongoDB Event Table found unknown operator '" + mathOperator + "' " +
+                        "for MATH operation. Please check your query and try again.");
+        }
+    }
+
+    private static String getFunctionKey(String namespace, String functionName) {
+        return namespace == null || namespace.isEmpty() ? functionName : namespace + ":" + functionName;
+    }
+
+    /**
+     * Method which builds the regular expression of a string function from its single string argument.
+     *
+     * @param functionKey the function being translated, used for error reporting.
+     * @param arguments   the constant arguments of the function.
+     * @param toPattern   the function which builds the pattern from the argument.
+     * @return the regular expression.
+     */
+    private static BsonRegularExpression toRegex(String functionKey, List<BsonValue> arguments,
+                                                 Function<String, String> toPattern) {
+        if (arguments.size() != 1 || !arguments.get(0).isString()) {
+            throw new MongoTableException("The Mongo Event table only supports the attribute function '" +
+                    functionKey + "' with a single string constant besides the table attribute. Please check your " +
+                    "query and try again.");
+        }
+        return new BsonRegularExpression(toPattern.apply(arguments.get(0).asString().getValue()));
+    }
+
+    /**
+     * Method which anchors a regular expression to the start, and optionally the end, of the field value. The
+     * expression is only wrapped in a group when it holds an alternation, so that patterns with a literal prefix
+     * keep the '^literal' form which MongoDB serves from the bounds of an index on the field.
+     *
+     * @param regex       the regular expression.
+     * @param entireValue whether the expression should also be anchored to the end of the value.
+     * @return the anchored regular expression.
+     */
+    private static String anchor(String regex, boolean entireValue) {
+        String anchored = regex.contains("|") ? "^(?:" + regex + ")" : "^" + regex;
+        return entireValue ? anchored + "$" : anchored;
+    }
+
+    /**
+     * Method for returning the MongoDB compare operator for a Siddhi compare operator.
+     *
+     * @param operator the Siddhi compare operator.
+     * @param reversed whether the table attribute is the right operand, in which case the operator is mirrored.
+     * @return the MongoDB compare operator.
+     */
+    private static String getCompareOperator(Compare.Operator operator, boolean reversed) {
+        switch (operator) {
+            case EQUAL:
+                return MONGO_COMPARE_EQUAL;
+            case NOT_EQUAL:
+                return MONGO_COMPARE_NOT_EQUAL;
+            case GREATER_THAN:
+                return reversed ? MONGO_COMPARE_LESS_THAN : MONGO_COMPARE_GREATER_THAN;
+            case GREATER_THAN_EQUAL:
+                return reversed ? MONGO_COMPARE_LESS_THAN_EQUAL : MONGO_COMPARE_GREATER_THAN_EQUAL;
+            case LESS_THAN:
+                return reversed ? MONGO_COMPARE_GREATER_THAN : MONGO_COMPARE_LESS_THAN;
+            case LESS_THAN_EQUAL:
+                return reversed ? MONGO_COMPARE_GREATER_THAN_EQUAL : MONGO_COMPARE_LESS_THAN_EQUAL;
+            default:
+                throw new MongoTableException("MongoDB Event Table found unknown operator '" + operator + "' for " +
+                        "COMPARE operation. Please check your query and try again.");
+        }
+    }
+
+    /**
+     * Method for recording the path of each stream variable placeholder within the compiled condition.
+     *
+     * @param node the current node of the compiled condition.
+     * @param path the keys and indices leading to the current node.
+     */
+    private void collectPlaceholders(BsonValue node, Deque<Object> path) {
+        Attribute variable = this.placeholderValues.get(node);
+        if (variable != null) {
+            this.placeholders.add(new Placeholder(path.toArray(), variable));
+        } else if (node.isDocument()) {
+            for (Map.Entry<String, BsonValue> entry : node.asDocument().entrySet()) {
+                path.addLast(entry.getKey());
+                this.collectPlaceholders(entry.getValue(), path);
+                path.removeLast();
+            }
+        } else if (node.isArray()) {
+            List<BsonValue> values = node.asArray().getValues();
+            for (int i = 0; i < values.size(); i++) {
+                path.addLast(i);
+                this.collectPlaceholders(values.get(i), path);
+                path.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Types of the operands which are kept in the stack while the condition is being visited.
+     */
+    private enum OperandType {
+        STORE_VARIABLE, STREAM_VARIABLE, CONSTANT, MATH, EXPRESSION
+    }
+
+    /**
+     * Class representing a function of the condition being visited, with the index of the attribute it is applied to
+     * and the translator which builds its filter.
+     */
+    private static class FunctionTranslation {
+        private int attributeIndex;
+        private MongoFunctionTranslator translator;
+
+        private FunctionTranslation(int attributeIndex, MongoFunctionTranslator translator) {
+            this.attributeIndex = attributeIndex;
+            this.translator = translator;
+        }
+    }
+
+    /**
+     * Class representing an operand of the condition being visited.
+     */
+    private static class Operand {
+        private OperandType type;
+        private String name;
+        private BsonValue value;
+
+        private Operand(OperandType type, String name, BsonValue value) {
+            this.type = type;
+            this.name = name;
+            this.value = value;
+        }
+
+        private static Operand expression(BsonDocument filter) {
+            return new Operand(OperandType.EXPRESSION, null, filter);
+        }
+
+        private boolean isValue() {
+            return this.type == OperandType.STREAM_VARIABLE || this.type == OperandType.CONSTANT;
+        }
+
+        @Override
+        public String toString() {
+            return this.type == OperandType.EXPRESSION ? this.value.asDocument().toJson() : this.name;
+        }
     }
 }
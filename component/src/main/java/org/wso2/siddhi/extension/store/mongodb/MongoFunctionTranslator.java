@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import org.bson.BsonValue;
+
+import java.util.List;
+
+/**
+ * Interface for translating a boolean Siddhi function over a table attribute into a MongoDB filter on the field the
+ * attribute is mapped to. Implementations are registered with
+ * {@link MongoConditionVisitor#registerFunctionTranslator(String, String, int, MongoFunctionTranslator)}.
+ */
+@FunctionalInterface
+public interface MongoFunctionTranslator {
+
+    /**
+     * Method which is called at compile time for every call of the function in a table condition.
+     *
+     * @param arguments the constant arguments of the function in the order they were given, excluding the table
+     *                  attribute.
+     * @return the value the field is matched against, such as a regular expression or an operator document.
+     * @throws org.wso2.siddhi.extension.store.mongodb.exception.MongoTableException if the arguments are not
+     *                                                                               supported.
+     */
+    BsonValue translate(List<BsonValue> arguments);
+}
@@ -17,30 +17,92 @@
  */
 package org.wso2.siddhi.extension.store.mongodb;
 
-import com.mongodb.client.FindIterable;
+import com.mongodb.MongoException;
 import com.mongodb.client.MongoCursor;
-import org.bson.Document;
+import com.mongodb.client.MongoIterable;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.siddhi.core.table.record.RecordIterator;
-import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.extension.store.mongodb.exception.MongoTableException;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class representing a RecordIterator which is responsible for processing MongoDB Event Table find() operations in a
  * streaming fashion.
+ * <p>
+ * When given an executor, the documents are prefetched on a background thread into a buffer of one cursor batch, so
+ * that the next 'getMore' round trip overlaps with the consumption of the current batch. Closing the iterator kills
+ * the server-side cursor if it is not exhausted, also when the iterator is abandoned part way. An iterator which is
+ * never closed is abandoned once its buffer stays full for the idle timeout, which kills the cursor and frees the
+ * prefetch thread. Reading it further then fails.
+ * <p>
+ * The documents of several cursors, such as the ranges of a parallel collection scan, are merged by prefetching
+ * each of them on a thread of its own into the shared buffer.
  */
 public class MongoIterator implements RecordIterator<Object[]> {
-    private MongoCursor documents;
-    private List<Attribute> attributes;
+    private static final Log log = LogFactory.getLog(MongoIterator.class);
+    private static final Object[] END_OF_DOCUMENTS = new Object[0];
+    private static final long PREFETCH_POLL_INTERVAL = 100;
+
+    private MongoCursor<Object[]> documents;
+    private BlockingQueue<Object[]> prefetchedDocuments;
+    private volatile boolean closed;
+    private volatile RuntimeException prefetchFailure;
+    private long idleTimeout;
+    private int activePrefetchers;
 
     private boolean preFetched;
     private Object[] nextDocument;
 
-    public MongoIterator(FindIterable documents, List<Attribute> attributes) {
-        this.documents = documents.iterator();
-        this.attributes = attributes;
+    public MongoIterator(MongoIterable<Object[]> documents) {
+        this(documents, 0, null, 0, 0);
+    }
+
+    /**
+     * @param documents        the documents to iterate over.
+     * @param batchSize        the number of documents the cursor fetches per round trip, or 0 for the server default.
+     * @param prefetchExecutor the executor which prefetches the documents, or null if they are read on demand.
+     * @param prefetchCapacity the number of documents buffered ahead of the consumer when prefetching.
+     * @param idleTimeout      the time in milliseconds after which a prefetch thread whose documents are not
+     *                         consumed abandons the iterator.
+     */
+    public MongoIterator(MongoIterable<Object[]> documents, int batchSize, ExecutorService prefetchExecutor,
+                         int prefetchCapacity, long idleTimeout) {
+        this(Collections.singletonList(documents), batchSize, prefetchExecutor, prefetchCapacity, idleTimeout);
+    }
+
+    /**
+     * @param documents        the disjoint parts of the documents to iterate over, which are merged in no particular
+     *                         order when there are several.
+     * @param batchSize        the number of documents the cursors fetch per round trip, or 0 for the server default.
+     * @param prefetchExecutor the executor which prefetches the documents, which is required for several parts.
+     * @param prefetchCapacity the number of documents buffered ahead of the consumer when prefetching.
+     * @param idleTimeout      the time in milliseconds after which a prefetch thread whose documents are not
+     *                         consumed abandons the iterator.
+     */
+    public MongoIterator(List<? extends MongoIterable<Object[]>> documents, int batchSize,
+                         ExecutorService prefetchExecutor, int prefetchCapacity, long idleTimeout) {
+        if (batchSize > 0) {
+            documents.forEach(part -> part.batchSize(batchSize));
+        }
+        if (prefetchExecutor == null) {
+            this.documents = documents.get(0).iterator();
+            return;
+        }
+        this.prefetchedDocuments = new ArrayBlockingQueue<>(prefetchCapacity);
+        this.idleTimeout = idleTimeout;
+        this.activePrefetchers = documents.size();
+        for (MongoIterable<Object[]> part : documents) {
+            MongoCursor<Object[]> cursor = part.iterator();
+            prefetchExecutor.execute(() -> this.prefetch(cursor));
+        }
     }
 
     @Override
@@ -60,30 +122,112 @@ public class MongoIterator implements RecordIterator<Object[]> {
             this.nextDocument = null;
             return result;
         }
+        if (this.prefetchedDocuments != null) {
+            return this.takePrefetched();
+        }
         if (this.documents.hasNext()) {
-            return this.extractRecord((Document) this.documents.next());
+            return this.documents.next();
         } else {
             return new Object[0];
         }
     }
 
+    private Object[] takePrefetched() {
+        while (this.activePrefetchers > 0 && !this.closed) {
+            Object[] document;
+            try {
+                document = this.prefetchedDocuments.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MongoTableException("Interrupted while waiting for the documents prefetched from the " +
+                        "MongoDB Event Table.", e);
+            }
+            if (document != END_OF_DOCUMENTS) {
+                return document;
+            }
+            this.activePrefetchers--;
+            if (this.prefetchFailure != null) {
+                break;
+            }
+        }
+        if (this.prefetchFailure != null) {
+            this.closed = true;
+            throw new MongoTableException("Reading the documents of the MongoDB Event Table failed due to " +
+                    this.prefetchFailure.getMessage(), this.prefetchFailure);
+        }
+        return new Object[0];
+    }
+
     /**
-     * Method which is used for extracting record values (in the form of an Object array) from a
-     * MongoDB {@link Document}, according to the table's field type order.
+     * Method run on a prefetch thread, which moves the documents of a cursor to the buffer until the cursor is
+     * exhausted or the iterator is closed or abandoned, and closes the cursor.
      *
-     * @param document the {@link Document} from which the values should be retrieved.
-     * @return an array of extracted values, all cast to {@link Object} type for portability.
+     * @param cursor the cursor to be read.
      */
-    private Object[] extractRecord(Document document) {
-        List<Object> result = new ArrayList<>();
-        for (Attribute attribute : this.attributes) {
-            result.add(document.get(attribute.getName()));
+    private void prefetch(MongoCursor<Object[]> cursor) {
+        try {
+            while (!this.closed && cursor.hasNext()) {
+                this.offer(cursor.next());
+            }
+        } catch (RuntimeException e) {
+            this.prefetchFailure = e;
+        } catch (InterruptedException e) {
+            this.closed = true;
+        } finally {
+            closeCursor(cursor);
+        }
+        try {
+            this.offer(END_OF_DOCUMENTS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Method for moving a document to the buffer, waiting while it is full. When the consumer takes no document for
+     * the idle timeout, the iterator is abandoned, which closes it and fails further reads.
+     *
+     * @param document the document to be buffered.
+     * @throws InterruptedException when the prefetch thread is interrupted while waiting for space in the buffer.
+     */
+    private void offer(Object[] document) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.idleTimeout);
+        boolean offered = false;
+        while (!this.closed && !offered) {
+            if (System.nanoTime() - deadline >= 0) {
+                this.prefetchFailure = new MongoTableException("The documents prefetched from the MongoDB Event " +
+                        "Table were not read for " + this.idleTimeout + " ms, and the unclosed iterator was " +
+                        "abandoned.");
+                this.closed = true;
+                log.warn(this.prefetchFailure.getMessage() + " The cursor was killed.");
+                return;
+            }
+            offered = this.prefetchedDocuments.offer(document, PREFETCH_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void closeCursor(MongoCursor<Object[]> cursor) {
+        try {
+            cursor.close();
+        } catch (MongoException e) {
+            log.debug("Closing the cursor of the MongoDB Event Table failed due to " + e.getMessage(), e);
         }
-        return result.toArray();
     }
 
+    /**
+     * Method which releases the cursor. A cursor which is not exhausted is killed on the server, by the prefetch
+     * thread when prefetching.
+     */
     @Override
     public void close() throws IOException {
-
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.prefetchedDocuments == null) {
+            closeCursor(this.documents);
+        } else {
+            this.prefetchedDocuments.clear();
+        }
     }
 }
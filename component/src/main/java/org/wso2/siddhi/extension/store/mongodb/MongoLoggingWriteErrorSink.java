@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The default {@link MongoWriteErrorSink} of the MongoDB Event Table, which logs every failed operation and keeps a
+ * count of the failures.
+ */
+public class MongoLoggingWriteErrorSink implements MongoWriteErrorSink {
+    private static final Log log = LogFactory.getLog(MongoLoggingWriteErrorSink.class);
+
+    private AtomicLong failedWriteCount = new AtomicLong();
+
+    @Override
+    public void onWriteError(WriteModel<Object[]> failedModel, BulkWriteError writeError) {
+        this.failedWriteCount.incrementAndGet();
+        if (failedModel instanceof UpdateManyModel) {
+            log.error("The update filter '" + ((UpdateManyModel) failedModel).getFilter().toString() +
+                    "' failed to update with event '" + ((UpdateManyModel) failedModel).getUpdate().toString() +
+                    "' in the MongoDB Event Table due to " + writeError.getMessage());
+        } else if (failedModel instanceof UpdateOneModel) {
+            log.error("The update filter '" + ((UpdateOneModel) failedModel).getFilter().toString() +
+                    "' failed to update with event '" + ((UpdateOneModel) failedModel).getUpdate().toString() +
+                    "' in the MongoDB Event Table due to " + writeError.getMessage());
+        } else if (failedModel instanceof ReplaceOneModel) {
+            log.error("The replace filter '" + ((ReplaceOneModel) failedModel).getFilter().toString() +
+                    "' failed to replace with event '" +
+                    Arrays.toString(((ReplaceOneModel<Object[]>) failedModel).getReplacement()) +
+                    "' in the MongoDB Event Table due to " + writeError.getMessage());
+        } else if (failedModel instanceof InsertOneModel) {
+            log.error("The event '" + Arrays.toString(((InsertOneModel<Object[]>) failedModel).getDocument()) +
+                    "' failed to insert into the Mongo Event Table due to " + writeError.getMessage());
+        } else if (failedModel instanceof DeleteManyModel) {
+            log.error("The delete filter '" + ((DeleteManyModel) failedModel).getFilter().toString() +
+                    "' failed to delete the events from the MongoDB Event Table due to "
+                    + writeError.getMessage());
+        } else if (failedModel instanceof DeleteOneModel) {
+            log.error("The delete filter '" + ((DeleteOneModel) failedModel).getFilter().toString() +
+                    "' failed to delete the event from the MongoDB Event Table due to "
+                    + writeError.getMessage());
+        } else {
+            log.error("The operation '" + failedModel + "' failed to be applied on the MongoDB Event Table due to "
+                    + writeError.getMessage());
+        }
+    }
+
+    @Override
+    public void onBatchError(List<WriteModel<Object[]>> failedModels, RuntimeException error) {
+        this.failedWriteCount.addAndGet(failedModels.size());
+        log.error("A batch of " + failedModels.size() + " operation(s) from the write-behind buffer failed to be " +
+                "written to the MongoDB Event Table due to " + error.getMessage(), error);
+    }
+
+    public long getFailedWriteCount() {
+        return this.failedWriteCount.get();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import org.bson.BsonDocument;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class representing the bounded cache of find() results of a MongoDB Event Table, keyed by the resolved filter.
+ * Entries expire after the configured time to live and are evicted in least recently used or least frequently used
+ * order once the cache is full. The table invalidates the cache whenever it writes to the collection; results read
+ * concurrently with a write are not cached, as they are tagged with the generation of the cache they were read in.
+ */
+public class MongoQueryCache {
+
+    /**
+     * Eviction policies supported by the cache.
+     */
+    public enum EvictionPolicy {
+        LRU, LFU
+    }
+
+    private int maxSize;
+    private long timeToLiveNanos;
+    private EvictionPolicy evictionPolicy;
+
+    private LinkedHashMap<BsonDocument, CacheEntry> entries;
+    private TreeMap<Long, LinkedHashSet<BsonDocument>> frequencies;
+    private long generation;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public MongoQueryCache(int maxSize, long timeToLive, EvictionPolicy evictionPolicy) {
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+        this.evictionPolicy = evictionPolicy;
+        this.entries = new LinkedHashMap<>(16, 0.75f, evictionPolicy == EvictionPolicy.LRU);
+        this.frequencies = new TreeMap<>();
+    }
+
+    /**
+     * Method for looking up the cached records of a filter.
+     *
+     * @param filter the resolved filter.
+     * @return the cached records, or null when the filter is not cached or its entry has expired.
+     */
+    public synchronized List<Object[]> get(BsonDocument filter) {
+        CacheEntry entry = this.entries.get(filter);
+        if (entry == null) {
+            this.missCount++;
+            return null;
+        }
+        if (this.timeToLiveNanos > 0 && System.nanoTime() - entry.createdTime > this.timeToLiveNanos) {
+            this.remove(filter, entry);
+            this.evictionCount++;
+            this.missCount++;
+            return null;
+        }
+        if (this.evictionPolicy == EvictionPolicy.LFU) {
+            this.removeFrequency(filter, entry.frequency);
+            entry.frequency++;
+            this.addFrequency(filter, entry.frequency);
+        }
+        this.hitCount++;
+        return entry.records;
+    }
+
+    /**
+     * Method for returning the current generation of the cache, which has to be passed to
+     * {@link #put(BsonDocument, List, long)} for the records read afterwards.
+     *
+     * @return the current generation.
+     */
+    public synchronized long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Method for caching the records of a filter. The records are ignored when the cache was invalidated after they
+     * were read.
+     *
+     * @param filter     the resolved filter.
+     * @param records    the records matching the filter.
+     * @param generation the generation of the cache when the records were read.
+     */
+    public synchronized void put(BsonDocument filter, List<Object[]> records, long generation) {
+        if (generation != this.generation) {
+            return;
+        }
+        CacheEntry existingEntry = this.entries.get(filter);
+        if (existingEntry != null) {
+            this.remove(filter, existingEntry);
+        } else if (this.entries.size() >= this.maxSize) {
+            this.evict();
+        }
+        this.entries.put(filter, new CacheEntry(records, System.nanoTime()));
+        if (this.evictionPolicy == EvictionPolicy.LFU) {
+            this.addFrequency(filter, 1);
+        }
+    }
+
+    /**
+     * Method for dropping all the cached entries, after the collection was written to.
+     */
+    public synchronized void invalidate() {
+        this.generation++;
+        this.entries.clear();
+        this.frequencies.clear();
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    public synchronized long getLookupCount() {
+        return this.hitCount + this.missCount;
+    }
+
+    /**
+     * @return a summary of the hit, miss and eviction counts of the cache, for logging.
+     */
+    public synchronized String getStatistics() {
+        return "served " + this.hitCount + " hit(s) and " + this.missCount + " miss(es), and evicted " +
+                this.evictionCount + " entries";
+    }
+
+    private void evict() {
+        BsonDocument filter;
+        if (this.evictionPolicy == EvictionPolicy.LFU) {
+            filter = this.frequencies.firstEntry().getValue().iterator().next();
+        } else {
+            filter = this.entries.keySet().iterator().next();
+        }
+        this.remove(filter, this.entries.get(filter));
+        this.evictionCount++;
+    }
+
+    private void remove(BsonDocument filter, CacheEntry entry) {
+        this.entries.remove(filter);
+        if (this.evictionPolicy == EvictionPolicy.LFU) {
+            this.removeFrequency(filter, entry.frequency);
+        }
+    }
+
+    private void addFrequency(BsonDocument filter, long frequency) {
+        this.frequencies.computeIfAbsent(frequency, key -> new LinkedHashSet<>()).add(filter);
+    }
+
+    private void removeFrequency(BsonDocument filter, long frequency) {
+        LinkedHashSet<BsonDocument> filters = this.frequencies.get(frequency);
+        filters.remove(filter);
+        if (filters.isEmpty()) {
+            this.frequencies.remove(frequency);
+        }
+    }
+
+    /**
+     * Class representing the cached records of a filter.
+     */
+    private static class CacheEntry {
+        private List<Object[]> records;
+        private long createdTime;
+        private long frequency;
+
+        private CacheEntry(List<Object[]> records, long createdTime) {
+            this.records = records;
+            this.createdTime = createdTime;
+            this.frequency = 1;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.BsonValueCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoPrimaryKey;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_ID_FIELD;
+
+/**
+ * A {@link Codec} which encodes the records of a MongoDB Event Table to BSON and decodes them back, according to the
+ * attributes of the table definition. Values are written directly from and read directly into the positional
+ * record, without going through an intermediate {@link org.bson.Document}. When the primary key is stored as '_id'
+ * the key attributes are written to and read from the '_id' field only. Values of type OBJECT and fields whose
+ * BSON type does not match the attribute type are handled by the given codec registry. Arrays are read into Lists,
+ * and values of BSON types the registry has no codec for are read as {@link org.bson.BsonValue}s.
+ */
+public class MongoRecordCodec implements Codec<Object[]> {
+    private static final BsonTypeClassMap BSON_TYPE_CLASS_MAP = new BsonTypeClassMap();
+
+    private String[] attributeNames;
+    private Attribute.Type[] attributeTypes;
+    private Map<String, Integer> attributePositions;
+    private int[] keyPositions;
+    private boolean[] keyAttributes;
+    private CodecRegistry codecRegistry;
+    private Codec<?> bsonValueCodec;
+    private Map<BsonType, Codec<?>> decoders;
+
+    public MongoRecordCodec(List<Attribute> attributes, CodecRegistry codecRegistry) {
+        this(attributes, null, codecRegistry);
+    }
+
+    /**
+     * @param attributes    the attributes of the table definition.
+     * @param primaryKey    the primary key stored as '_id', or null if every attribute is stored in a field of its
+     *                      own name.
+     * @param codecRegistry the registry used for values of type OBJECT and for mismatching BSON types.
+     */
+    public MongoRecordCodec(List<Attribute> attributes, MongoPrimaryKey primaryKey, CodecRegistry codecRegistry) {
+        this.attributeNames = new String[attributes.size()];
+        this.attributeTypes = new Attribute.Type[attributes.size()];
+        this.attributePositions = new HashMap<>();
+        for (int i = 0; i < attributes.size(); i++) {
+            this.attributeNames[i] = attributes.get(i).getName();
+            this.attributeTypes[i] = attributes.get(i).getType();
+            this.attributePositions.put(this.attributeNames[i], i);
+        }
+        this.keyAttributes = new boolean[attributes.size()];
+        if (primaryKey != null) {
+            this.keyPositions = primaryKey.getKeyAttributes().stream().mapToInt(this.attributePositions::get).toArray();
+            for (int keyPosition : this.keyPositions) {
+                this.keyAttributes[keyPosition] = true;
+            }
+        }
+        this.codecRegistry = codecRegistry;
+        this.bsonValueCodec = new BsonValueCodec();
+        this.decoders = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Object[] record, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        if (this.keyPositions != null) {
+            writer.writeName(MONGO_ID_FIELD);
+            if (this.keyPositions.length == 1) {
+                this.writeValue(writer, record[this.keyPositions[0]], this.attributeTypes[this.keyPositions[0]],
+                        encoderContext);
+            } else {
+                writer.writeStartDocument();
+                for (int keyPosition : this.keyPositions) {
+                    writer.writeName(this.attributeNames[keyPosition]);
+                    this.writeValue(writer, record[keyPosition], this.attributeTypes[keyPosition], encoderContext);
+                }
+                writer.writeEndDocument();
+            }
+        }
+        for (int i = 0; i < this.attributeNames.length; i++) {
+            if (this.keyAttributes[i]) {
+                continue;
+            }
+            writer.writeName(this.attributeNames[i]);
+            this.writeValue(writer, record[i], this.attributeTypes[i], encoderContext);
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Object[] decode(BsonReader reader, DecoderContext decoderContext) {
+        Object[] record = new Object[this.attributeNames.length];
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String fieldName = reader.readName();
+            if (this.keyPositions != null && fieldName.equals(MONGO_ID_FIELD)) {
+                this.readKey(reader, record, decoderContext);
+                continue;
+            }
+            Integer position = this.attributePositions.get(fieldName);
+            if (position == null) {
+                reader.skipValue();
+            } else {
+                record[position] = this.readValue(reader, this.attributeTypes[position], decoderContext);
+            }
+        }
+        reader.readEndDocument();
+        return record;
+    }
+
+    @Override
+    public Class<Object[]> getEncoderClass() {
+        return Object[].class;
+    }
+
+    /**
+     * Method for reading the '_id' field into the primary key attributes of the record.
+     *
+     * @param reader         the reader positioned at the value of the '_id' field.
+     * @param record         the record being decoded.
+     * @param decoderContext the context of the decoding.
+     */
+    private void readKey(BsonReader reader, Object[] record, DecoderContext decoderContext) {
+        if (this.keyPositions.length == 1) {
+            record[this.keyPositions[0]] = this.readValue(reader, this.attributeTypes[this.keyPositions[0]],
+                    decoderContext);
+            return;
+        }
+        if (reader.getCurrentBsonType() != BsonType.DOCUMENT) {
+            reader.skipValue();
+            return;
+        }
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            Integer position = this.attributePositions.get(reader.readName());
+            if (position == null || !this.keyAttributes[position]) {
+                reader.skipValue();
+            } else {
+                record[position] = this.readValue(reader, this.attributeTypes[position], decoderContext);
+            }
+        }
+        reader.readEndDocument();
+    }
+
+    /**
+     * Method for writing a single attribute value.
+     *
+     * @param writer         the writer of the document being encoded.
+     * @param value          the value of the attribute.
+     * @param type           the type of the attribute.
+     * @param encoderContext the context of the encoding.
+     */
+    @SuppressWarnings("unchecked")
+    private void writeValue(BsonWriter writer, Object value, Attribute.Type type, EncoderContext encoderContext) {
+        if (value == null) {
+            writer.writeNull();
+            return;
+        }
+        switch (type) {
+            case STRING:
+                writer.writeString(value.toString());
+                break;
+            case INT:
+                writer.writeInt32(((Number) value).intValue());
+                break;
+            case LONG:
+                writer.writeInt64(((Number) value).longValue());
+                break;
+            case FLOAT:
+            case DOUBLE:
+                writer.writeDouble(((Number) value).doubleValue());
+                break;
+            case BOOL:
+                writer.writeBoolean((Boolean) value);
+                break;
+            default:
+                Codec codec = this.codecRegistry.get(value.getClass());
+                encoderContext.encodeWithChildContext(codec, writer, value);
+                break;
+        }
+    }
+
+    /**
+     * Method for reading a single attribute value. Numeric values are converted to the type of the attribute.
+     *
+     * @param reader         the reader of the document being decoded.
+     * @param type           the type of the attribute.
+     * @param decoderContext the context of the decoding.
+     * @return the value of the attribute.
+     */
+    private Object readValue(BsonReader reader, Attribute.Type type, DecoderContext decoderContext) {
+        BsonType bsonType = reader.getCurrentBsonType();
+        switch (bsonType) {
+            case NULL:
+                reader.readNull();
+                return null;
+            case STRING:
+                if (type == Attribute.Type.STRING) {
+                    return reader.readString();
+                }
+                break;
+            case BOOLEAN:
+                if (type == Attribute.Type.BOOL) {
+                    return reader.readBoolean();
+                }
+                break;
+            case INT32:
+                if (isNumeric(type)) {
+                    return toAttributeType(reader.readInt32(), type);
+                }
+                break;
+            case INT64:
+                if (isNumeric(type)) {
+                    return toAttributeType(reader.readInt64(), type);
+                }
+                break;
+            case DOUBLE:
+                if (isNumeric(type)) {
+                    return toAttributeType(reader.readDouble(), type);
+                }
+                break;
+            case ARRAY:
+                List<Object> values = new ArrayList<>();
+                reader.readStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    values.add(this.readValue(reader, Attribute.Type.OBJECT, decoderContext));
+                }
+                reader.readEndArray();
+                return values;
+            default:
+                break;
+        }
+        return this.decoders.computeIfAbsent(bsonType, this::getDecoder).decode(reader, decoderContext);
+    }
+
+    /**
+     * Method for returning the codec which decodes a value of the given BSON type into the Java type it is mapped to,
+     * or into a {@link org.bson.BsonValue} when the codec registry has no codec for that type.
+     */
+    private Codec<?> getDecoder(BsonType bsonType) {
+        Class<?> valueClass = BSON_TYPE_CLASS_MAP.get(bsonType);
+        if (valueClass != null) {
+            try {
+                return this.codecRegistry.get(valueClass);
+            } catch (CodecConfigurationException e) {
+                // Fall through to the BSON value codec, which decodes every BSON type.
+            }
+        }
+        return this.bsonValueCodec;
+    }
+
+    private static boolean isNumeric(Attribute.Type type) {
+        return type == Attribute.Type.INT || type == Attribute.Type.LONG ||
+                type == Attribute.Type.FLOAT || type == Attribute.Type.DOUBLE;
+    }
+
+    private static Object toAttributeType(Number value, Attribute.Type type) {
+        switch (type) {
+            case INT:
+                return value.intValue();
+            case LONG:
+                return value.longValue();
+            case FLOAT:
+                return value.floatValue();
+            default:
+                return value.doubleValue();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import com.mongodb.MongoException;
+import org.wso2.siddhi.extension.store.mongodb.exception.MongoTableException;
+
+import java.util.function.Function;
+
+/**
+ * The connection of a MongoDB Event Table, which lazily acquires the shared client of its MongoDB URI from the
+ * {@link MongoClientRegistry} and builds the collection handles of the table from it once. The handles are reused by
+ * every operation until the connection is released. A released connection fails fast instead of acquiring a client
+ * which would never be released, and so a table connects again only through a new connection.
+ *
+ * @param <H> the type of the collection handles built from the client.
+ */
+public class MongoTableConnection<H> {
+    private final MongoClientURI mongoClientURI;
+    private final Function<MongoClient, H> handlesBuilder;
+    private volatile MongoClient mongoClient;
+    private volatile H handles;
+    private volatile boolean released;
+
+    public MongoTableConnection(MongoClientURI mongoClientURI, Function<MongoClient, H> handlesBuilder) {
+        this.mongoClientURI = mongoClientURI;
+        this.handlesBuilder = handlesBuilder;
+    }
+
+    /**
+     * Method for returning the shared client of the connection, acquiring it on first use
+     *
+     * @return the {@link MongoClient} instance shared by the tables connecting with the same mongodb.uri.
+     * @throws MongoTableException when the mongodb.uri contains an illegal value, or the connection is released
+     */
+    public MongoClient getClient() {
+        MongoClient client = this.mongoClient;
+        if (client == null) {
+            synchronized (this) {
+                this.checkNotReleased();
+                client = this.mongoClient;
+                if (client == null) {
+                    try {
+                        client = MongoClientRegistry.acquire(this.mongoClientURI);
+                    } catch (MongoException e) {
+                        throw new MongoTableException("Annotation 'Store' contains illegal value for " +
+                                "element 'mongodb.uri' as '" + this.mongoClientURI + "'. Please check " +
+                                "your query and try again.", e);
+                    }
+                    this.mongoClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Method for returning the collection handles of the connection, building them on first use
+     *
+     * @return the collection handles built from the shared client.
+     * @throws MongoTableException when the connection is released
+     */
+    public H getHandles() {
+        H currentHandles = this.handles;
+        if (currentHandles == null) {
+            synchronized (this) {
+                this.checkNotReleased();
+                currentHandles = this.handles;
+                if (currentHandles == null) {
+                    currentHandles = this.handlesBuilder.apply(this.getClient());
+                    this.handles = currentHandles;
+                }
+            }
+        }
+        return currentHandles;
+    }
+
+    /**
+     * Method for releasing the shared client of the connection. Releasing a connection more than once is safe.
+     *
+     * @return <code>true</code> if a client was released
+     * <code>false</code> if the connection never acquired one, or was already released
+     */
+    public synchronized boolean release() {
+        this.released = true;
+        this.handles = null;
+        if (this.mongoClient == null) {
+            return false;
+        }
+        this.mongoClient = null;
+        MongoClientRegistry.release(this.mongoClientURI);
+        return true;
+    }
+
+    private void checkNotReleased() {
+        if (this.released) {
+            throw new MongoTableException("The connection with MongoDB hosts " + this.mongoClientURI.getHosts() +
+                    " was released as the table was shut down, and can not be used any further.");
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.MongoWriteConcernException;
+import com.mongodb.client.model.WriteModel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.siddhi.extension.store.mongodb.exception.MongoTableException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A class representing the write-behind buffer of the MongoDB Event Table. Write models are queued in a bounded buffer
+ * by the Siddhi processing threads and written to the collection in bulk batches by a single background writer, which
+ * keeps the order in which the models were queued. Producers are blocked while the buffer is full. A batch which
+ * fails as the server is unreachable or not writable is retried with an exponential backoff, and handed to the write
+ * error sink once the retries are exhausted or when it fails otherwise.
+ */
+public class MongoWriteBehindBuffer implements Runnable {
+    private static final Log log = LogFactory.getLog(MongoWriteBehindBuffer.class);
+    private static final long SHUTDOWN_POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int FLUSH_RETRY_LIMIT = 5;
+    private static final long FLUSH_RETRY_BACKOFF = 100;
+    private static final long FLUSH_RETRY_MAX_BACKOFF = TimeUnit.SECONDS.toMillis(5);
+
+    private BlockingQueue<WriteModel<Object[]>> buffer;
+    private Consumer<List<WriteModel<Object[]>>> bulkWriter;
+    private MongoWriteErrorSink writeErrorSink;
+    private int batchSize;
+    private long flushIntervalNanos;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public MongoWriteBehindBuffer(String collectionName, Consumer<List<WriteModel<Object[]>>> bulkWriter,
+                                  MongoWriteErrorSink writeErrorSink, int bufferSize, int batchSize,
+                                  long flushInterval) {
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.bulkWriter = bulkWriter;
+        this.writeErrorSink = writeErrorSink;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        this.writerThread = new Thread(this, "MongoDB-WriteBehind-" + collectionName);
+        this.writerThread.setDaemon(true);
+    }
+
+    /**
+     * Method for starting the background writer, after which write models can be queued.
+     */
+    public void start() {
+        this.running = true;
+        this.writerThread.start();
+    }
+
+    /**
+     * Method for queueing write models to be written by the background writer. Blocks while the buffer is full.
+     *
+     * @param writeModels a List of WriteModels to be applied.
+     * @throws MongoTableException when the calling thread is interrupted while waiting for space in the buffer.
+     */
+    public void enqueue(List<? extends WriteModel<Object[]>> writeModels) {
+        if (!this.running) {
+            throw new MongoTableException("The write-behind buffer of the MongoDB Event Table has been shut down " +
+                    "and can not accept further events.");
+        }
+        try {
+            for (WriteModel<Object[]> writeModel : writeModels) {
+                this.buffer.put(writeModel);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MongoTableException("Interrupted while waiting for space in the write-behind buffer of the " +
+                    "MongoDB Event Table.", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        List<WriteModel<Object[]>> batch = new ArrayList<>(this.batchSize);
+        while (this.running || !this.buffer.isEmpty()) {
+            try {
+                this.fillBatch(batch);
+            } catch (InterruptedException e) {
+                this.running = false;
+            }
+            this.flush(batch);
+        }
+    }
+
+    /**
+     * Method for collecting write models into the batch until it is full or the flush interval elapses. Once the
+     * buffer is shut down, the batch is completed as soon as the buffer is empty, without waiting for the interval.
+     *
+     * @param batch the batch to be filled.
+     * @throws InterruptedException when the writer thread is interrupted while waiting for write models.
+     */
+    private void fillBatch(List<WriteModel<Object[]>> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + this.flushIntervalNanos;
+        while (batch.size() < this.batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || (!this.running && this.buffer.isEmpty())) {
+                return;
+            }
+            WriteModel<Object[]> writeModel = this.buffer.poll(Math.min(remaining, SHUTDOWN_POLL_INTERVAL),
+                    TimeUnit.NANOSECONDS);
+            if (writeModel != null) {
+                batch.add(writeModel);
+                this.buffer.drainTo(batch, this.batchSize - batch.size());
+            }
+        }
+    }
+
+    /**
+     * Method for writing and clearing the given batch. A batch which fails with a retriable error is written again
+     * after a backoff, which doubles with every attempt. Operations of a batch which was partially applied before the
+     * failure may then be applied twice. A batch which can not be written is handed to the write error sink, so that
+     * the writer keeps draining the buffer and producers are never blocked by a writer which has died.
+     *
+     * @param batch the batch of write models to be written.
+     */
+    private void flush(List<WriteModel<Object[]>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long backoff = FLUSH_RETRY_BACKOFF;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                this.bulkWriter.accept(batch);
+                batch.clear();
+                return;
+            } catch (RuntimeException e) {
+                if (attempt > FLUSH_RETRY_LIMIT || !isRetriable(e) || !this.backOff(backoff)) {
+                    this.writeErrorSink.onBatchError(new ArrayList<>(batch), e);
+                    batch.clear();
+                    return;
+                }
+                log.warn("Writing a batch of " + batch.size() + " operation(s) from the write-behind buffer to " +
+                        "the MongoDB Event Table failed due to " + e.getMessage() + ". Retry " +
+                        attempt + " of " + FLUSH_RETRY_LIMIT + ".");
+                backoff = Math.min(backoff * 2, FLUSH_RETRY_MAX_BACKOFF);
+            }
+        }
+    }
+
+    /**
+     * Method for waiting before a batch is written again.
+     *
+     * @param backoff the time to wait in milliseconds.
+     * @return <code>true</code> if the batch should be retried
+     * <code>false</code> if the writer thread was interrupted while waiting
+     */
+    private boolean backOff(long backoff) {
+        try {
+            Thread.sleep(backoff);
+            return true;
+        } catch (InterruptedException e) {
+            this.running = false;
+            return false;
+        }
+    }
+
+    /**
+     * Method for checking whether a failed batch may succeed when written again, i.e. whether it failed as the
+     * server could not be reached, was not the primary or could not satisfy the write concern in time.
+     */
+    private static boolean isRetriable(RuntimeException e) {
+        Throwable cause = e;
+        while (cause != null && !(cause instanceof MongoException)) {
+            cause = cause.getCause();
+        }
+        return cause instanceof MongoSocketException || cause instanceof MongoTimeoutException ||
+                cause instanceof MongoNotPrimaryException || cause instanceof MongoNodeIsRecoveringException ||
+                cause instanceof MongoWriteConcernException;
+    }
+
+    /**
+     * Method for stopping the background writer after all the queued write models have been flushed.
+     */
+    public void shutdown() {
+        this.running = false;
+        try {
+            this.writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while flushing the write-behind buffer of the MongoDB Event Table. " +
+                    this.buffer.size() + " queued operation(s) may not have been written.");
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoTableUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * A class which coalesces the write models of a bulk write which target the same primary key, so that a key updated
+ * several times within a batch is written once. Models are grouped by the key their filter matches by equality, or
+ * the key of the record they insert. As the key is unique, models of different keys touch different documents and
+ * can be reordered freely, while models which can not be attributed to a single key are kept in place and end every
+ * group, so that no model is moved across them.
+ * <p>
+ * Within a group, successive '$set' updates and upserts are merged keeping the last value of every field, a
+ * replacement supersedes the models before it, and a delete cancels the models before it, including an insert.
+ */
+public class MongoWriteCoalescer {
+    private Set<String> keyFields;
+    private Function<Object[], BsonDocument> recordEncoder;
+    private Predicate<WriteModel<Object[]>> pinnedModels;
+
+    /**
+     * @param keyFields     the document fields of the primary key of the table.
+     * @param recordEncoder the function which encodes a record into the document it is stored as.
+     */
+    public MongoWriteCoalescer(Set<String> keyFields, Function<Object[], BsonDocument> recordEncoder) {
+        this(keyFields, recordEncoder, writeModel -> false);
+    }
+
+    /**
+     * @param keyFields     the document fields of the primary key of the table.
+     * @param recordEncoder the function which encodes a record into the document it is stored as.
+     * @param pinnedModels  the predicate selecting the models which must be written as they are, in place. They are
+     *                      kept like models which can not be attributed to a single key.
+     */
+    public MongoWriteCoalescer(Set<String> keyFields, Function<Object[], BsonDocument> recordEncoder,
+                               Predicate<WriteModel<Object[]>> pinnedModels) {
+        this.keyFields = keyFields;
+        this.recordEncoder = recordEncoder;
+        this.pinnedModels = pinnedModels;
+    }
+
+    /**
+     * Method for coalescing a batch of write models.
+     *
+     * @param writeModels the write models in the order they are to be applied.
+     * @return the coalesced write models.
+     */
+    public List<WriteModel<Object[]>> coalesce(List<? extends WriteModel<Object[]>> writeModels) {
+        List<WriteModel<Object[]>> coalescedModels = new ArrayList<>(writeModels);
+        Map<BsonDocument, Integer> lastModelIndices = new HashMap<>();
+        for (int i = 0; i < coalescedModels.size(); i++) {
+            WriteModel<Object[]> writeModel = coalescedModels.get(i);
+            BsonDocument key = this.getKey(writeModel);
+            if (key == null) {
+                lastModelIndices.clear();
+                continue;
+            }
+            Integer lastModelIndex = lastModelIndices.get(key);
+            WriteModel<Object[]> mergedModel = lastModelIndex == null ? null
+                    : merge(coalescedModels.get(lastModelIndex), writeModel);
+            if (mergedModel == null) {
+                lastModelIndices.put(key, i);
+            } else if (isDelete(writeModel)) {
+                coalescedModels.set(lastModelIndex, null);
+                lastModelIndices.put(key, i);
+            } else {
+                coalescedModels.set(lastModelIndex, mergedModel);
+                coalescedModels.set(i, null);
+            }
+        }
+        return coalescedModels.stream().filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Method for reading the primary key a write model targets.
+     *
+     * @param writeModel the write model.
+     * @return the key fields and their values, or null if the model is not limited to a single key.
+     */
+    private BsonDocument getKey(WriteModel<Object[]> writeModel) {
+        if (this.keyFields.isEmpty() || this.pinnedModels.test(writeModel)) {
+            return null;
+        }
+        Map<String, BsonValue> keyValues;
+        if (writeModel instanceof InsertOneModel) {
+            BsonDocument document = this.recordEncoder.apply(((InsertOneModel<Object[]>) writeModel).getDocument());
+            keyValues = new HashMap<>();
+            for (String keyField : this.keyFields) {
+                keyValues.put(keyField, MongoTableUtils.getFieldValue(document, keyField));
+            }
+        } else {
+            Bson filter = getFilter(writeModel);
+            if (!(filter instanceof BsonDocument)) {
+                return null;
+            }
+            keyValues = MongoTableUtils.extractEqualities((BsonDocument) filter);
+            if (keyValues == null || !keyValues.keySet().equals(this.keyFields)) {
+                return null;
+            }
+        }
+        BsonDocument key = new BsonDocument();
+        new TreeMap<>(keyValues).forEach((keyField, value) -> key.put(keyField, MongoTableUtils.normalize(value)));
+        return key;
+    }
+
+    private static Bson getFilter(WriteModel<Object[]> writeModel) {
+        if (writeModel instanceof UpdateOneModel) {
+            return ((UpdateOneModel<Object[]>) writeModel).getFilter();
+        } else if (writeModel instanceof UpdateManyModel) {
+            return ((UpdateManyModel<Object[]>) writeModel).getFilter();
+        } else if (writeModel instanceof ReplaceOneModel) {
+            return ((ReplaceOneModel<Object[]>) writeModel).getFilter();
+        } else if (writeModel instanceof DeleteOneModel) {
+            return ((DeleteOneModel<Object[]>) writeModel).getFilter();
+        } else if (writeModel instanceof DeleteManyModel) {
+            return ((DeleteManyModel<Object[]>) writeModel).getFilter();
+        }
+        return null;
+    }
+
+    private static boolean isDelete(WriteModel<Object[]> writeModel) {
+        return writeModel instanceof DeleteOneModel || writeModel instanceof DeleteManyModel;
+    }
+
+    /**
+     * Method for merging two successive write models of the same key.
+     *
+     * @param first  the model applied first.
+     * @param second the model applied second.
+     * @return the model with the effect of both, the second model if it is a delete which cancels the first, or null
+     * if the models can not be merged.
+     */
+    private static WriteModel<Object[]> merge(WriteModel<Object[]> first, WriteModel<Object[]> second) {
+        if (isDelete(second)) {
+            return isDelete(first) ? null : second;
+        }
+        if (second instanceof ReplaceOneModel && !isDelete(first)) {
+            ReplaceOneModel<Object[]> replacement = (ReplaceOneModel<Object[]>) second;
+            boolean upsert = replacement.getOptions().isUpsert() || first instanceof InsertOneModel
+                    || (first instanceof ReplaceOneModel && ((ReplaceOneModel<Object[]>) first).getOptions().isUpsert())
+                    || (isUpdate(first) && getOptions(first).isUpsert());
+            return new ReplaceOneModel<>(replacement.getFilter(), replacement.getReplacement(),
+                    new UpdateOptions().upsert(upsert));
+        }
+        Document firstUpdate = getUpdate(first);
+        Document secondUpdate = getUpdate(second);
+        if (firstUpdate == null || secondUpdate == null) {
+            return null;
+        }
+        boolean firstUpsert = getOptions(first).isUpsert();
+        boolean secondUpsert = getOptions(second).isUpsert();
+        Document firstSet = getOperator(firstUpdate, MongoTableConstants.MONGO_SET);
+        Document secondSet = getOperator(secondUpdate, MongoTableConstants.MONGO_SET);
+        if (secondUpsert && !firstUpsert && !secondSet.keySet().containsAll(firstSet.keySet())) {
+            return null;
+        }
+        Document mergedSet = new Document(firstSet);
+        mergedSet.putAll(secondSet);
+        Document mergedInsert = new Document(getOperator(firstUpsert ? firstUpdate : secondUpdate,
+                MongoTableConstants.MONGO_SET_ON_INSERT));
+        mergedInsert.keySet().removeAll(mergedSet.keySet());
+        Document mergedUpdate = new Document();
+        if (!mergedSet.isEmpty()) {
+            mergedUpdate.append(MongoTableConstants.MONGO_SET, mergedSet);
+        }
+        if (!mergedInsert.isEmpty()) {
+            mergedUpdate.append(MongoTableConstants.MONGO_SET_ON_INSERT, mergedInsert);
+        }
+        return new UpdateOneModel<>(getFilter(second), mergedUpdate,
+                new UpdateOptions().upsert(firstUpsert || secondUpsert));
+    }
+
+    /**
+     * Method for reading the update document of an update model, when it only holds '$set' and '$setOnInsert'.
+     *
+     * @param writeModel the write model.
+     * @return the update document, or null if the model is not such an update.
+     */
+    private static Document getUpdate(WriteModel<Object[]> writeModel) {
+        Bson update = null;
+        if (writeModel instanceof UpdateOneModel) {
+            update = ((UpdateOneModel<Object[]>) writeModel).getUpdate();
+        } else if (writeModel instanceof UpdateManyModel) {
+            update = ((UpdateManyModel<Object[]>) writeModel).getUpdate();
+        }
+        if (!(update instanceof Document)) {
+            return null;
+        }
+        for (String operator : ((Document) update).keySet()) {
+            if (!operator.equals(MongoTableConstants.MONGO_SET)
+                    && !operator.equals(MongoTableConstants.MONGO_SET_ON_INSERT)) {
+                return null;
+            }
+        }
+        return (Document) update;
+    }
+
+    private static boolean isUpdate(WriteModel<Object[]> writeModel) {
+        return writeModel instanceof UpdateOneModel || writeModel instanceof UpdateManyModel;
+    }
+
+    private static UpdateOptions getOptions(WriteModel<Object[]> writeModel) {
+        return writeModel instanceof UpdateOneModel ? ((UpdateOneModel<Object[]>) writeModel).getOptions()
+                : ((UpdateManyModel<Object[]>) writeModel).getOptions();
+    }
+
+    private static Document getOperator(Document update, String operator) {
+        Object operatorDocument = update.get(operator);
+        return operatorDocument instanceof Document ? (Document) operatorDocument : new Document();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+
+import java.util.List;
+
+/**
+ * Interface for the receivers of the operations which the MongoDB server failed to apply during a bulk write.
+ * Implementations can be plugged into a MongoDB Event Table through the 'bulk.error.sink' element of the Store
+ * annotation and must provide a public no-argument constructor.
+ */
+public interface MongoWriteErrorSink {
+
+    /**
+     * Method which is called once for every operation of a bulk write which failed.
+     *
+     * @param failedModel the WriteModel which failed to be applied.
+     * @param writeError  the error reported by the server for the operation.
+     */
+    void onWriteError(WriteModel<Object[]> failedModel, BulkWriteError writeError);
+
+    /**
+     * Method which is called once for a batch of operations of the write-behind buffer which could not be written at
+     * all, e.g. as the server stayed unreachable. By default every operation of the batch is handed to
+     * {@link #onWriteError(WriteModel, BulkWriteError)} with an error built from the failure of the batch.
+     *
+     * @param failedModels the WriteModels of the batch, in the order they were queued.
+     * @param error        the failure of the last attempt to write the batch.
+     */
+    default void onBatchError(List<WriteModel<Object[]>> failedModels, RuntimeException error) {
+        int code = error instanceof MongoException ? ((MongoException) error).getCode() : -1;
+        for (int i = 0; i < failedModels.size(); i++) {
+            this.onWriteError(failedModels.get(i), new BulkWriteError(code, String.valueOf(error.getMessage()),
+                    new BsonDocument(), i));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb.util;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_AND;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_EQUAL;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_GREATER_THAN;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_GREATER_THAN_EQUAL;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_LESS_THAN;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_LESS_THAN_EQUAL;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_IN;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_OR;
+
+/**
+ * Class which rewrites a compiled condition into the smallest equivalent filter, of the shapes the MongoDB query
+ * planner derives index bounds from most reliably:
+ * <ul>
+ * <li>nested '$and' and '$or' chains are flattened into a single array, and single element chains are unwrapped.</li>
+ * <li>range predicates on the same field of an '$and' are merged into one operator document.</li>
+ * <li>equalities on the same field of an '$or' are merged into an '$in'.</li>
+ * <li>remaining equalities are written as implicit equalities, e.g. {symbol: 'IBM'}.</li>
+ * </ul>
+ * Values are moved rather than copied, so that placeholders tracked by identity stay part of the filter.
+ */
+public class MongoFilterNormalizer {
+    private static final List<String> RANGE_OPERATORS = Arrays.asList(MONGO_COMPARE_GREATER_THAN,
+            MONGO_COMPARE_GREATER_THAN_EQUAL, MONGO_COMPARE_LESS_THAN, MONGO_COMPARE_LESS_THAN_EQUAL);
+
+    private Set<BsonValue> opaqueValues;
+
+    /**
+     * @param opaqueValues an identity based set of the values whose runtime BSON type is not known at compile time.
+     *                     They are kept in explicit '$eq' form, as an implicit equality would be interpreted as a
+     *                     query when the value turns out to be a document of operators or a regular expression.
+     */
+    public MongoFilterNormalizer(Set<BsonValue> opaqueValues) {
+        this.opaqueValues = opaqueValues;
+    }
+
+    /**
+     * Method which normalizes a filter.
+     *
+     * @param filter the filter to be normalized.
+     * @return the normalized filter.
+     */
+    public BsonDocument normalize(BsonDocument filter) {
+        BsonDocument normalizedFilter = new BsonDocument();
+        for (Map.Entry<String, BsonValue> clause : filter.entrySet()) {
+            switch (clause.getKey()) {
+                case MONGO_AND:
+                case MONGO_OR:
+                    List<BsonDocument> operands = new ArrayList<>();
+                    this.collectOperands(clause.getKey(), clause.getValue().asArray(), operands);
+                    operands = clause.getKey().equals(MONGO_AND) ?
+                            this.mergeRanges(operands) : this.mergeEqualities(operands);
+                    if (operands.size() == 1 && filter.size() == 1) {
+                        return operands.get(0);
+                    }
+                    normalizedFilter.put(clause.getKey(), new BsonArray(operands));
+                    break;
+                default:
+                    normalizedFilter.put(clause.getKey(), clause.getKey().startsWith("$") ?
+                            clause.getValue() : this.toImplicitEquality(clause.getValue()));
+                    break;
+            }
+        }
+        return normalizedFilter;
+    }
+
+    /**
+     * Method which collects the operands of a chain, flattening nested chains of the same operator before their
+     * operands are normalized, so that the operands of the whole chain are merged together.
+     */
+    private void collectOperands(String operator, BsonArray filters, List<BsonDocument> operands) {
+        for (BsonValue filter : filters) {
+            if (filter.asDocument().size() == 1 && filter.asDocument().containsKey(operator)) {
+                this.collectOperands(operator, filter.asDocument().getArray(operator), operands);
+                continue;
+            }
+            BsonDocument normalizedFilter = this.normalize(filter.asDocument());
+            if (normalizedFilter.size() == 1 && normalizedFilter.containsKey(operator)) {
+                normalizedFilter.getArray(operator).forEach(operand -> operands.add(operand.asDocument()));
+            } else {
+                operands.add(normalizedFilter);
+            }
+        }
+    }
+
+    /**
+     * Method which merges the conjuncts holding only range operators on the same field into the first of them, as
+     * long as no operator is repeated.
+     */
+    private List<BsonDocument> mergeRanges(List<BsonDocument> conjuncts) {
+        Map<String, BsonDocument> rangesByField = new LinkedHashMap<>();
+        List<BsonDocument> mergedConjuncts = new ArrayList<>();
+        for (BsonDocument conjunct : conjuncts) {
+            String field = getSingleField(conjunct);
+            if (field == null || !isRange(conjunct.get(field))) {
+                mergedConjuncts.add(conjunct);
+                continue;
+            }
+            BsonDocument range = conjunct.getDocument(field);
+            BsonDocument mergedRange = rangesByField.get(field);
+            if (mergedRange != null && range.keySet().stream().noneMatch(mergedRange::containsKey)) {
+                range.forEach(mergedRange::put);
+                continue;
+            }
+            if (mergedRange == null) {
+                rangesByField.put(field, range);
+            }
+            mergedConjuncts.add(conjunct);
+        }
+        return mergedConjuncts;
+    }
+
+    /**
+     * Method which merges the disjuncts holding an equality on the same field into an '$in' in place of the first of
+     * them.
+     */
+    private List<BsonDocument> mergeEqualities(List<BsonDocument> disjuncts) {
+        Map<String, BsonArray> valuesByField = new LinkedHashMap<>();
+        List<BsonDocument> mergedDisjuncts = new ArrayList<>();
+        for (BsonDocument disjunct : disjuncts) {
+            String field = getSingleField(disjunct);
+            BsonValue value = field == null ? null : this.getEqualityValue(disjunct.get(field));
+            if (value == null || value.isRegularExpression() || this.isOpaque(value)) {
+                mergedDisjuncts.add(disjunct);
+                continue;
+            }
+            BsonArray values = valuesByField.get(field);
+            if (values == null) {
+                values = new BsonArray();
+                valuesByField.put(field, values);
+                mergedDisjuncts.add(new BsonDocument(field, new BsonDocument(MONGO_IN, values)));
+            }
+            values.add(value);
+        }
+        for (int i = 0; i < mergedDisjuncts.size(); i++) {
+            BsonDocument disjunct = mergedDisjuncts.get(i);
+            String field = getSingleField(disjunct);
+            BsonArray values = field == null ? null : valuesByField.get(field);
+            if (values != null && values.size() == 1 && disjunct.get(field).isDocument()
+                    && disjunct.getDocument(field).get(MONGO_IN) == values) {
+                mergedDisjuncts.set(i, new BsonDocument(field,
+                        this.toImplicitEquality(new BsonDocument(MONGO_COMPARE_EQUAL, values.get(0)))));
+            }
+        }
+        return mergedDisjuncts;
+    }
+
+    private BsonValue getEqualityValue(BsonValue condition) {
+        if (condition.isDocument() && condition.asDocument().size() == 1
+                && condition.asDocument().containsKey(MONGO_COMPARE_EQUAL)) {
+            return condition.asDocument().get(MONGO_COMPARE_EQUAL);
+        }
+        if (!condition.isDocument() && !condition.isRegularExpression() && !this.isOpaque(condition)) {
+            return condition;
+        }
+        return null;
+    }
+
+    private BsonValue toImplicitEquality(BsonValue condition) {
+        if (!condition.isDocument() || condition.asDocument().size() != 1
+                || !condition.asDocument().containsKey(MONGO_COMPARE_EQUAL)) {
+            return condition;
+        }
+        BsonValue value = condition.asDocument().get(MONGO_COMPARE_EQUAL);
+        if (value.isDocument() || value.isArray() || value.isRegularExpression() || this.isOpaque(value)) {
+            return condition;
+        }
+        return value;
+    }
+
+    private boolean isOpaque(BsonValue value) {
+        return this.opaqueValues.contains(value);
+    }
+
+    private static boolean isRange(BsonValue condition) {
+        return condition.isDocument() && !condition.asDocument().isEmpty()
+                && RANGE_OPERATORS.containsAll(condition.asDocument().keySet());
+    }
+
+    private static String getSingleField(BsonDocument filter) {
+        if (filter.size() != 1) {
+            return null;
+        }
+        String field = filter.keySet().iterator().next();
+        return field.startsWith("$") ? null : field;
+    }
+}
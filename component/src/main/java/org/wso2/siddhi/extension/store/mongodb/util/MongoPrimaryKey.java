@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb.util;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_AND;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_COMPARE_EQUAL;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_ID_FIELD;
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_OR;
+
+/**
+ * Describes a primary key which is stored as the '_id' of the documents instead of in a separate unique index.
+ * A single key attribute is stored as the value of '_id' and a composite key as an embedded document holding the key
+ * attributes in the order they are declared in the PrimaryKey annotation.
+ */
+public class MongoPrimaryKey {
+    private List<String> keyAttributes;
+
+    public MongoPrimaryKey(List<String> keyAttributes) {
+        this.keyAttributes = Collections.unmodifiableList(new ArrayList<>(keyAttributes));
+    }
+
+    public List<String> getKeyAttributes() {
+        return keyAttributes;
+    }
+
+    public boolean isComposite() {
+        return this.keyAttributes.size() > 1;
+    }
+
+    public boolean isKeyAttribute(String attributeName) {
+        return this.keyAttributes.contains(attributeName);
+    }
+
+    /**
+     * Method which returns the name of the document field an attribute is stored in.
+     *
+     * @param attributeName the name of the attribute.
+     * @return '_id' for a single key attribute, '_id.attributeName' for an attribute of a composite key, and the name
+     * of the attribute otherwise.
+     */
+    public String toDocumentField(String attributeName) {
+        if (!this.isKeyAttribute(attributeName)) {
+            return attributeName;
+        }
+        return this.isComposite() ? MONGO_ID_FIELD + "." + attributeName : MONGO_ID_FIELD;
+    }
+
+    /**
+     * Method which builds the '_id' value of a record.
+     *
+     * @param record     the record.
+     * @param attributes the attributes of the table definition.
+     * @return the key attribute value, or an embedded document of the key attribute values for a composite key.
+     */
+    public BsonValue toKeyValue(Object[] record, List<Attribute> attributes) {
+        BsonDocument keyDocument = new BsonDocument();
+        for (String keyAttribute : this.keyAttributes) {
+            for (int i = 0; i < attributes.size(); i++) {
+                if (attributes.get(i).getName().equals(keyAttribute)) {
+                    keyDocument.append(keyAttribute, MongoTableUtils.toBsonValue(record[i],
+                            attributes.get(i).getType()));
+                }
+            }
+        }
+        return this.isComposite() ? keyDocument : keyDocument.get(this.keyAttributes.get(0));
+    }
+
+    /**
+     * Method which rewrites a filter built on the attributes of the table to the fields the documents are stored
+     * with. Key attributes are renamed to '_id' (or '_id.attributeName' for a composite key), and a conjunction
+     * holding an equality on every attribute of a composite key is collapsed into a single equality on the
+     * embedded '_id' document, so that the lookup is served by the '_id' index.
+     * The values of the filter are moved, not copied, so placeholders keep their identity.
+     *
+     * @param filter the filter built on the attributes of the table.
+     * @return the rewritten filter.
+     */
+    public BsonDocument rewriteFilter(BsonDocument filter) {
+        BsonDocument rewrittenFilter = new BsonDocument();
+        for (Map.Entry<String, BsonValue> clause : filter.entrySet()) {
+            switch (clause.getKey()) {
+                case MONGO_AND:
+                    List<BsonValue> conjuncts = new ArrayList<>();
+                    this.collectConjuncts(clause.getValue().asArray(), conjuncts);
+                    if (this.isComposite()) {
+                        this.mergeKeyEqualities(conjuncts);
+                    }
+                    if (conjuncts.size() == 1 && filter.size() == 1) {
+                        return conjuncts.get(0).asDocument();
+                    }
+                    rewrittenFilter.put(MONGO_AND, new BsonArray(conjuncts));
+                    break;
+                case MONGO_OR:
+                    BsonArray disjuncts = new BsonArray();
+                    clause.getValue().asArray().forEach(
+                            disjunct -> disjuncts.add(this.rewriteFilter(disjunct.asDocument())));
+                    rewrittenFilter.put(MONGO_OR, disjuncts);
+                    break;
+                default:
+                    rewrittenFilter.put(this.toDocumentField(clause.getKey()), clause.getValue());
+                    break;
+            }
+        }
+        return rewrittenFilter;
+    }
+
+    private void collectConjuncts(BsonArray filters, List<BsonValue> conjuncts) {
+        for (BsonValue filter : filters) {
+            BsonDocument filterDocument = filter.asDocument();
+            if (filterDocument.size() == 1 && filterDocument.containsKey(MONGO_AND)) {
+                this.collectConjuncts(filterDocument.getArray(MONGO_AND), conjuncts);
+            } else {
+                conjuncts.add(this.rewriteFilter(filterDocument));
+            }
+        }
+    }
+
+    private void mergeKeyEqualities(List<BsonValue> conjuncts) {
+        BsonDocument keyDocument = new BsonDocument();
+        List<BsonValue> keyEqualities = new ArrayList<>();
+        for (String keyAttribute : this.keyAttributes) {
+            String keyField = this.toDocumentField(keyAttribute);
+            for (BsonValue conjunct : conjuncts) {
+                BsonDocument conjunctDocument = conjunct.asDocument();
+                if (conjunctDocument.size() == 1 && conjunctDocument.containsKey(keyField)
+                        && conjunctDocument.get(keyField).isDocument()
+                        && conjunctDocument.getDocument(keyField).size() == 1
+                        && conjunctDocument.getDocument(keyField).containsKey(MONGO_COMPARE_EQUAL)) {
+                    keyDocument.append(keyAttribute, conjunctDocument.getDocument(keyField).get(MONGO_COMPARE_EQUAL));
+                    keyEqualities.add(conjunct);
+                    break;
+                }
+            }
+        }
+        if (keyEqualities.size() == this.keyAttributes.size()) {
+            List<BsonValue> mergedConjuncts = new ArrayList<>();
+            boolean merged = false;
+            for (BsonValue conjunct : conjuncts) {
+                if (keyEqualities.stream().noneMatch(keyEquality -> keyEquality == conjunct)) {
+                    mergedConjuncts.add(conjunct);
+                } else if (!merged) {
+                    mergedConjuncts.add(new BsonDocument(MONGO_ID_FIELD,
+                            new BsonDocument(MONGO_COMPARE_EQUAL, keyDocument)));
+                    merged = true;
+                }
+            }
+            conjuncts.clear();
+            conjuncts.addAll(mergedConjuncts);
+        }
+    }
+}
@@ -25,6 +25,79 @@ public class MongoTableConstants {
     //Annotation field names
     public static final String ANNOTATION_ELEMENT_URI = "mongodb.uri";
     public static final String ANNOTATION_ELEMENT_COLLECTION_NAME = "collection.name";
+    public static final String ANNOTATION_ELEMENT_WRITE_MODE = "write.mode";
+    public static final String ANNOTATION_ELEMENT_BUFFER_SIZE = "buffer.size";
+    public static final String ANNOTATION_ELEMENT_BATCH_SIZE = "batch.size";
+    public static final String ANNOTATION_ELEMENT_FLUSH_INTERVAL = "flush.interval";
+    public static final String ANNOTATION_ELEMENT_BULK_ORDERED = "bulk.ordered";
+    public static final String ANNOTATION_ELEMENT_BULK_ERROR_SINK = "bulk.error.sink";
+    public static final String ANNOTATION_ELEMENT_BULK_COALESCE = "bulk.coalesce";
+    public static final String ANNOTATION_ELEMENT_CACHE_SIZE = "cache.size";
+    public static final String ANNOTATION_ELEMENT_CACHE_TTL = "cache.ttl";
+    public static final String ANNOTATION_ELEMENT_CACHE_POLICY = "cache.policy";
+    public static final String ANNOTATION_ELEMENT_PRIMARY_KEY_MODE = "primary.key.mode";
+    public static final String ANNOTATION_ELEMENT_UPDATE_INCREMENT = "update.increment";
+    public static final String ANNOTATION_ELEMENT_UPDATE_MULTIPLY = "update.multiply";
+    public static final String ANNOTATION_ELEMENT_BUCKET_BY = "bucket.by";
+    public static final String ANNOTATION_ELEMENT_BUCKET_SPAN = "bucket.span";
+    public static final String ANNOTATION_ELEMENT_BUCKET_MAX = "bucket.max";
+    public static final String ANNOTATION_ELEMENT_BUCKET_TIME = "bucket.time";
+    public static final String ANNOTATION_ELEMENT_READ_BATCH_SIZE = "read.batch.size";
+    public static final String ANNOTATION_ELEMENT_READ_PREFETCH = "read.prefetch";
+    public static final String ANNOTATION_ELEMENT_READ_THREADS = "read.threads";
+    public static final String ANNOTATION_ELEMENT_READ_IDLE_TIMEOUT = "read.idle.timeout";
+    public static final String ANNOTATION_ELEMENT_SCAN_PARALLELISM = "scan.parallelism";
+    public static final String ANNOTATION_ELEMENT_SCAN_MIN_DOCUMENTS = "scan.min.documents";
+    public static final String ANNOTATION_ELEMENT_READ_PREFERENCE = "read.preference";
+    public static final String ANNOTATION_ELEMENT_MAX_STALENESS = "max.staleness";
+    public static final String ANNOTATION_ELEMENT_READ_CONCERN = "read.concern";
+    public static final String ANNOTATION_ELEMENT_WRITE_CONCERN = "write.concern";
+    public static final String ANNOTATION_ELEMENT_JOURNAL = "journal";
+    public static final String ANNOTATION_ELEMENT_WTIMEOUT = "wtimeout";
+
+    //Write modes
+    public static final String WRITE_MODE_SYNC = "sync";
+    public static final String WRITE_MODE_ASYNC = "async";
+
+    //Primary key modes
+    public static final String PRIMARY_KEY_MODE_INDEX = "index";
+    public static final String PRIMARY_KEY_MODE_ID = "id";
+
+    //Default values for the write-behind buffer
+    public static final String DEFAULT_BUFFER_SIZE = "10000";
+    public static final String DEFAULT_BATCH_SIZE = "1000";
+    public static final String DEFAULT_FLUSH_INTERVAL = "1000";
+
+    //Default values for bulk writes
+    public static final String DEFAULT_BULK_ORDERED = "true";
+    public static final String DEFAULT_BULK_COALESCE = "false";
+
+    //Default values for the query cache
+    public static final String DEFAULT_CACHE_TTL = "60000";
+    public static final String DEFAULT_CACHE_POLICY = "LRU";
+    public static final int CACHE_MAX_RECORDS_PER_ENTRY = 10000;
+    public static final long CACHE_STATISTICS_LOG_INTERVAL = 1000;
+
+    //Default values for time-bucketed documents
+    public static final String DEFAULT_BUCKET_SPAN = "1 min";
+    public static final String DEFAULT_BUCKET_MAX = "1000";
+
+    //Default values for reading cursors
+    public static final String DEFAULT_READ_PREFETCH = "false";
+    public static final int DEFAULT_READ_PREFETCH_CAPACITY = 1000;
+    public static final String DEFAULT_READ_THREADS = "16";
+    public static final String DEFAULT_READ_IDLE_TIMEOUT = "1 min";
+
+    //Default values for parallel collection scans
+    public static final String DEFAULT_SCAN_PARALLELISM = "1";
+    public static final int SCAN_SAMPLES_PER_RANGE = 20;
+    public static final String DEFAULT_SCAN_MIN_DOCUMENTS = "10000";
+
+    //Mongo field names
+    public static final String MONGO_ID_FIELD = "_id";
+    public static final String BUCKET_START_FIELD = "_start";
+    public static final String BUCKET_COUNT_FIELD = "_count";
+    public static final String BUCKET_RECORDS_FIELD = "_records";
 
     //Mongo Operators
     public static final String MONGO_COMPARE_LESS_THAN = "$lt";
@@ -34,25 +107,37 @@ public class MongoTableConstants {
     public static final String MONGO_COMPARE_EQUAL = "$eq";
     public static final String MONGO_COMPARE_NOT_EQUAL = "$ne";
     public static final String MONGO_NOT = "$not";
+    public static final String MONGO_AND = "$and";
+    public static final String MONGO_OR = "$or";
+    public static final String MONGO_IN = "$in";
+    public static final String MONGO_EXPR = "$expr";
+
+    //Mongo Aggregation Expression Operators
+    public static final String MONGO_ADD = "$add";
+    public static final String MONGO_SUBTRACT = "$subtract";
+    public static final String MONGO_MULTIPLY = "$multiply";
+    public static final String MONGO_DIVIDE = "$divide";
+    public static final String MONGO_MOD = "$mod";
+    public static final String MONGO_LITERAL = "$literal";
+
+    //Mongo Update Operators
+    public static final String MONGO_SET = "$set";
+    public static final String MONGO_SET_ON_INSERT = "$setOnInsert";
+    public static final String MONGO_INC = "$inc";
+    public static final String MONGO_MUL = "$mul";
+    public static final String MONGO_PUSH = "$push";
+    public static final String MONGO_EACH = "$each";
 
-    //Regex for comparing operands
-    public static final String REG_EXPRESSION = "\\{.*}$";
-    public static final String REG_SIMPLE_EXPRESSION = "^\\{(\\S*):\\{.*}}$";
-    public static final String REG_STREAMVAR_OR_CONST = "^strVar\\d*|^const\\d*";
-
-    //Mongo filters for condition builder
-    public static final String MONGO_AND_FILTER = "{$and:[{{LEFT_OPERAND}},{{RIGHT_OPERAND}}]}";
-    public static final String MONGO_OR_FILTER = "{$or:[{{LEFT_OPERAND}},{{RIGHT_OPERAND}}]}";
-    public static final String MONGO_NOT_FILTER = "{{{FIELD_NAME}}:{{OPERAND}}}";
-    public static final String MONGO_COMPARE_FILTER = "{{{LEFT_OPERAND}}:{{{COMPARE_OPERATOR}}:{{RIGHT_OPERAND}}}}";
-    public static final String MONGO_IS_NULL_FILTER = "{{{OPERAND}}:{$eq:null}}";
-
-    //Placeholders for condition replacements
-    public static final String PLACEHOLDER_LEFT_OPERAND = "{{LEFT_OPERAND}}";
-    public static final String PLACEHOLDER_RIGHT_OPERAND = "{{RIGHT_OPERAND}}";
-    public static final String PLACEHOLDER_OPERAND = "{{OPERAND}}";
-    public static final String PLACEHOLDER_FIELD_NAME = "{{FIELD_NAME}}";
-    public static final String PLACEHOLDER_COMPARE_OPERATOR = "{{COMPARE_OPERATOR}}";
+    //Mongo Aggregation Stages
+    public static final String MONGO_MATCH = "$match";
+    public static final String MONGO_UNWIND = "$unwind";
+    public static final String MONGO_REPLACE_ROOT = "$replaceRoot";
+    public static final String MONGO_NEW_ROOT = "newRoot";
+    public static final String MONGO_LIMIT = "$limit";
+    public static final String MONGO_SAMPLE = "$sample";
+    public static final String MONGO_SAMPLE_SIZE = "size";
+    public static final String MONGO_PROJECT = "$project";
+    public static final String MONGO_SORT = "$sort";
 
     private MongoTableConstants() {
     }
@@ -18,6 +18,7 @@
 package org.wso2.siddhi.extension.store.mongodb.util;
 
 import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
 import com.mongodb.client.model.Collation;
 import com.mongodb.client.model.CollationAlternate;
 import com.mongodb.client.model.CollationCaseFirst;
@@ -27,6 +28,14 @@ import com.mongodb.client.model.IndexModel;
 import com.mongodb.client.model.IndexOptions;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.BsonValue;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bson.json.JsonParseException;
@@ -37,19 +46,45 @@ import org.wso2.siddhi.query.api.definition.Attribute;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import static org.wso2.siddhi.extension.store.mongodb.util.MongoTableConstants.MONGO_ID_FIELD;
+
 
 /**
  * Class which holds the utility methods which are used by various units in the MongoDB Event Table implementation.
  */
 public class MongoTableUtils {
     private static final Log log = LogFactory.getLog(MongoTableUtils.class);
+    private static final String BSON_VALUE_KEY = "value";
+    private static final Pattern TIME_SPAN_PATTERN = Pattern.compile("^(\\d+)\\s*([a-zA-Z]+)?$");
+    private static final Map<String, TimeUnit> TIME_UNITS = new HashMap<>();
+
+    static {
+        for (String unit : new String[]{"ms", "millisec", "millisecond", "milliseconds"}) {
+            TIME_UNITS.put(unit, TimeUnit.MILLISECONDS);
+        }
+        for (String unit : new String[]{"s", "sec", "second", "seconds"}) {
+            TIME_UNITS.put(unit, TimeUnit.SECONDS);
+        }
+        for (String unit : new String[]{"m", "min", "minute", "minutes"}) {
+            TIME_UNITS.put(unit, TimeUnit.MINUTES);
+        }
+        for (String unit : new String[]{"h", "hour", "hours"}) {
+            TIME_UNITS.put(unit, TimeUnit.HOURS);
+        }
+        for (String unit : new String[]{"d", "day", "days"}) {
+            TIME_UNITS.put(unit, TimeUnit.DAYS);
+        }
+    }
 
     private MongoTableUtils() {
         //Prevent Initialization.
@@ -241,62 +276,418 @@ public class MongoTableUtils {
     }
 
     /**
-     * Utility method which can be resolve the condition with the runtime values and return a Document describing the
-     * filter.
+     * Utility method which can be resolve the condition with the runtime values and return a BsonDocument describing
+     * the filter.
      *
      * @param compiledCondition     the compiled condition which was built during compile time and now is being provided
      *                              by the Siddhi runtime.
      * @param conditionParameterMap the map which contains the runtime value(s) for the condition.
-     * @return Document.
+     * @return BsonDocument, which is a copy of the condition template even if the condition has no stream variables.
      */
-    public static Document resolveCondition(MongoCompiledCondition compiledCondition,
-                                            Map<String, Object> conditionParameterMap) {
-        Map<String, Object> parameters = compiledCondition.getPlaceholders();
-        String compiledQuery = compiledCondition.getCompiledQuery();
-        if (compiledQuery.equalsIgnoreCase("true")) {
-            return new Document();
-        }
-        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
-            Object parameter = entry.getValue();
-            Attribute variable = (Attribute) parameter;
-            if (variable.getType().equals(Attribute.Type.STRING)) {
-                compiledQuery = compiledQuery.replaceAll(entry.getKey(), "\"" +
-                        conditionParameterMap.get(variable.getName()).toString() + "\"");
-            } else {
-                compiledQuery = compiledQuery.replaceAll(entry.getKey(),
-                        conditionParameterMap.get(variable.getName()).toString());
+    public static BsonDocument resolveCondition(MongoCompiledCondition compiledCondition,
+                                                Map<String, Object> conditionParameterMap) {
+        List<Placeholder> placeholders = compiledCondition.getPlaceholders();
+        BsonDocument resolvedQuery = compiledCondition.getCompiledQuery().clone();
+        if (placeholders.isEmpty()) {
+            return resolvedQuery;
+        }
+        for (Placeholder placeholder : placeholders) {
+            placeholder.bind(resolvedQuery, conditionParameterMap);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("The final compiled query : '" + resolvedQuery.toJson() + "'");
+        }
+        return resolvedQuery;
+    }
+
+    /**
+     * Utility method which resolves a condition once for a batch of condition parameter maps, e.g. the delete events
+     * of a chunk. When the maps differ in the value of a single stream variable, and that variable is compared to a
+     * field by equality, the equality is replaced with an '$in' of the values of all the maps, so that the resulting
+     * filter matches the documents matched by any of the maps. Maps which agree on every value resolve to the filter
+     * of the first one.
+     *
+     * @param compiledCondition      the compiled condition which was built during compile time and now is being
+     *                               provided by the Siddhi runtime.
+     * @param conditionParameterMaps the maps which contain the runtime value(s) for the condition.
+     * @return BsonDocument, or null if the maps can not be resolved to a single filter.
+     */
+    public static BsonDocument resolveCondition(MongoCompiledCondition compiledCondition,
+                                                List<Map<String, Object>> conditionParameterMaps) {
+        Placeholder varyingPlaceholder = null;
+        for (Placeholder placeholder : compiledCondition.getPlaceholders()) {
+            BsonValue value = placeholder.getValue(conditionParameterMaps.get(0));
+            if (conditionParameterMaps.stream().allMatch(
+                    conditionParameterMap -> placeholder.getValue(conditionParameterMap).equals(value))) {
+                continue;
             }
+            if (varyingPlaceholder != null || !placeholder.isEqualityValue() || conditionParameterMaps.stream()
+                    .anyMatch(conditionParameterMap -> placeholder.getValue(conditionParameterMap)
+                            .isRegularExpression())) {
+                return null;
+            }
+            varyingPlaceholder = placeholder;
+        }
+        BsonDocument resolvedQuery = resolveCondition(compiledCondition, conditionParameterMaps.get(0));
+        if (varyingPlaceholder != null) {
+            varyingPlaceholder.bindAll(resolvedQuery, conditionParameterMaps);
         }
         if (log.isDebugEnabled()) {
-            log.debug("The final compiled query : '" + compiledQuery + "'");
+            log.debug("The final compiled query for a batch of " + conditionParameterMaps.size() + " : '" +
+                    resolvedQuery.toJson() + "'");
         }
-        return Document.parse(compiledQuery);
+        return resolvedQuery;
     }
 
     /**
-     * Utility method which can be used to check if a given string instance is null or empty.
+     * Utility method which escapes the metacharacters of a literal string, so that it can be used as a MongoDB regular
+     * expression matching the string itself. Plain backslash escapes are used rather than a quoted section, which
+     * keeps anchored literal prefixes recognisable by the MongoDB query planner for index bounds.
      *
-     * @param field the string instance to be checked.
-     * @return true if the field is null or empty.
+     * @param literal the literal string.
+     * @return the regular expression matching the literal.
      */
-    public static boolean isEmpty(String field) {
-        return (field == null || field.trim().length() == 0);
+    public static String quoteRegex(String literal) {
+        StringBuilder regex = new StringBuilder(literal.length());
+        for (char character : literal.toCharArray()) {
+            if ("\\^$.|?*+()[]{}".indexOf(character) >= 0) {
+                regex.append('\\');
+            }
+            regex.append(character);
+        }
+        return regex.toString();
     }
 
+    /**
+     * Utility method which builds the projection of the fields mapped to the table attributes, so that no other
+     * field of the matched documents is sent by the server. The '_id' field is excluded unless it is an attribute.
+     *
+     * @param attributes list of attributes form the table definition.
+     * @return BsonDocument describing the projection.
+     */
+    public static BsonDocument buildProjection(List<Attribute> attributes) {
+        BsonDocument projection = new BsonDocument();
+        for (Attribute attribute : attributes) {
+            projection.append(attribute.getName(), new BsonInt32(1));
+        }
+        if (!projection.containsKey(MONGO_ID_FIELD)) {
+            projection.append(MONGO_ID_FIELD, new BsonInt32(0));
+        }
+        return projection;
+    }
 
     /**
-     * Utility method tp map the values to the respective attributes before database operations.
+     * Utility method which builds the projection of an existence probe for the given filter. When the filter
+     * constrains an indexed field only that field is returned, so that the probe can be answered from the index
+     * alone. Otherwise only the '_id' field is returned.
      *
-     * @param record              Object array of the runtime values.
-     * @param attributesPositions Map containing the attribute position and name.
-     * @return Document
+     * @param filter        the resolved filter of the probe.
+     * @param indexedFields the names of the fields covered by the indices of the collection.
+     * @return BsonDocument describing the projection.
      */
-    public static Map<String, Object> mapValuestoAttributes(Object[] record, Map<Integer, String> attributesPositions) {
-        Map<String, Object> attributesValuesMap = new HashMap<>();
-        for (int i = 0; i < record.length; i++) {
-            attributesValuesMap.put(attributesPositions.get(i), record[i]);
+    public static BsonDocument buildProbeProjection(BsonDocument filter, Set<String> indexedFields) {
+        String probeField = findIndexedField(filter, indexedFields);
+        if (probeField == null || probeField.equals(MONGO_ID_FIELD)) {
+            return new BsonDocument(MONGO_ID_FIELD, new BsonInt32(1));
         }
-        return attributesValuesMap;
+        return new BsonDocument(probeField, new BsonInt32(1)).append(MONGO_ID_FIELD, new BsonInt32(0));
+    }
+
+    private static String findIndexedField(BsonDocument filter, Set<String> indexedFields) {
+        for (Map.Entry<String, BsonValue> clause : filter.entrySet()) {
+            if (indexedFields.contains(clause.getKey())) {
+                return clause.getKey();
+            }
+            if (clause.getKey().equals(MongoTableConstants.MONGO_AND)) {
+                for (BsonValue subFilter : clause.getValue().asArray()) {
+                    String probeField = findIndexedField(subFilter.asDocument(), indexedFields);
+                    if (probeField != null) {
+                        return probeField;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Utility method which reads the fields a filter matches by equality, when the filter consists of nothing else.
+     * Both implicit and explicit '$eq' equalities are accepted, at the top level or as conjuncts of an '$and'.
+     *
+     * @param filter the resolved filter.
+     * @return the fields and the values they are matched with, or null if the filter holds any other condition.
+     */
+    public static Map<String, BsonValue> extractEqualities(BsonDocument filter) {
+        Map<String, BsonValue> equalities = new HashMap<>();
+        for (Map.Entry<String, BsonValue> clause : filter.entrySet()) {
+            BsonValue condition = clause.getValue();
+            if (clause.getKey().equals(MongoTableConstants.MONGO_AND)) {
+                for (BsonValue subFilter : condition.asArray()) {
+                    Map<String, BsonValue> subEqualities = extractEqualities(subFilter.asDocument());
+                    if (subEqualities == null) {
+                        return null;
+                    }
+                    for (Map.Entry<String, BsonValue> subEquality : subEqualities.entrySet()) {
+                        BsonValue value = equalities.put(subEquality.getKey(), subEquality.getValue());
+                        if (value != null && !value.equals(subEquality.getValue())) {
+                            return null;
+                        }
+                    }
+                }
+            } else if (clause.getKey().startsWith("$") || condition.isRegularExpression()) {
+                return null;
+            } else if (condition.isDocument() && condition.asDocument().size() == 1
+                    && condition.asDocument().containsKey(MongoTableConstants.MONGO_COMPARE_EQUAL)) {
+                equalities.put(clause.getKey(), condition.asDocument().get(MongoTableConstants.MONGO_COMPARE_EQUAL));
+            } else if (condition.isDocument() && condition.asDocument().keySet().stream()
+                    .anyMatch(key -> key.startsWith("$"))) {
+                return null;
+            } else {
+                equalities.put(clause.getKey(), condition);
+            }
+        }
+        return equalities;
+    }
+
+    /**
+     * Utility method which checks whether a filter, or any of its conjuncts, holds a condition on the '_id' field or
+     * on a field embedded in it.
+     *
+     * @param filter the resolved filter.
+     * @return true if the filter refers to '_id'.
+     */
+    public static boolean constrainsIdField(BsonDocument filter) {
+        for (Map.Entry<String, BsonValue> clause : filter.entrySet()) {
+            if (clause.getKey().equals(MONGO_ID_FIELD) || clause.getKey().startsWith(MONGO_ID_FIELD + ".")) {
+                return true;
+            }
+            if (clause.getKey().equals(MongoTableConstants.MONGO_AND)) {
+                for (BsonValue subFilter : clause.getValue().asArray()) {
+                    if (constrainsIdField(subFilter.asDocument())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Utility method which collects the fields a filter refers to, either as the field of a query operator or as a
+     * field path of an '$expr' aggregation expression.
+     *
+     * @param filter the filter.
+     * @return the names of the fields, with the embedded fields of a path such as '_id.symbol' in dotted form.
+     */
+    public static Set<String> getFieldNames(BsonDocument filter) {
+        Set<String> fieldNames = new HashSet<>();
+        collectFieldNames(filter, false, fieldNames);
+        return fieldNames;
+    }
+
+    private static void collectFieldNames(BsonValue node, boolean isExpression, Set<String> fieldNames) {
+        if (node.isDocument()) {
+            for (Map.Entry<String, BsonValue> entry : node.asDocument().entrySet()) {
+                if (entry.getKey().equals(MongoTableConstants.MONGO_LITERAL)) {
+                    continue;
+                }
+                if (!entry.getKey().startsWith("$") && !isExpression) {
+                    fieldNames.add(entry.getKey());
+                }
+                collectFieldNames(entry.getValue(),
+                        isExpression || entry.getKey().equals(MongoTableConstants.MONGO_EXPR), fieldNames);
+            }
+        } else if (node.isArray()) {
+            node.asArray().forEach(value -> collectFieldNames(value, isExpression, fieldNames));
+        } else if (isExpression && node.isString() && node.asString().getValue().startsWith("$")
+                && !node.asString().getValue().startsWith("$$")) {
+            fieldNames.add(node.asString().getValue().substring(1));
+        }
+    }
+
+    /**
+     * Utility method which splits the values of a field into disjoint ranges of about the same number of documents,
+     * bounded by evenly spaced values of a sorted sample. The first range also holds the values of other BSON types,
+     * which the range operators do not compare with the bounds, so that the ranges always cover the whole collection.
+     *
+     * @param field        the field the ranges are built on.
+     * @param sampleValues a sample of the values of the field, in ascending order.
+     * @param rangeCount   the number of ranges to be built.
+     * @return the filters selecting the ranges, or null if the sample can not be split, such as when it holds values
+     * of different BSON types.
+     */
+    public static List<BsonDocument> splitRanges(String field, List<BsonValue> sampleValues, int rangeCount) {
+        if (sampleValues.isEmpty()) {
+            return null;
+        }
+        BsonValue firstValue = sampleValues.get(0);
+        for (BsonValue sampleValue : sampleValues) {
+            if (sampleValue.getBsonType() != firstValue.getBsonType()
+                    && !(sampleValue.isNumber() && firstValue.isNumber())) {
+                return null;
+            }
+        }
+        List<BsonValue> bounds = new ArrayList<>();
+        for (int i = 1; i < rangeCount; i++) {
+            BsonValue bound = sampleValues.get(i * sampleValues.size() / rangeCount);
+            if (bounds.isEmpty() || !bounds.get(bounds.size() - 1).equals(bound)) {
+                bounds.add(bound);
+            }
+        }
+        if (bounds.isEmpty()) {
+            return null;
+        }
+        List<BsonDocument> ranges = new ArrayList<>();
+        ranges.add(new BsonDocument(field, new BsonDocument(MongoTableConstants.MONGO_NOT,
+                new BsonDocument(MongoTableConstants.MONGO_COMPARE_GREATER_THAN_EQUAL, bounds.get(0)))));
+        for (int i = 0; i < bounds.size(); i++) {
+            BsonDocument range = new BsonDocument(MongoTableConstants.MONGO_COMPARE_GREATER_THAN_EQUAL, bounds.get(i));
+            if (i + 1 < bounds.size()) {
+                range.append(MongoTableConstants.MONGO_COMPARE_LESS_THAN, bounds.get(i + 1));
+            }
+            ranges.add(new BsonDocument(field, range));
+        }
+        return ranges;
+    }
+
+    /**
+     * Utility method which reads the value of a field, following dotted paths into embedded documents.
+     *
+     * @param document the document holding the field.
+     * @param field    the name or dotted path of the field.
+     * @return the value of the field, or {@link BsonNull#VALUE} if the field is missing.
+     */
+    public static BsonValue getFieldValue(BsonDocument document, String field) {
+        BsonValue value = document;
+        for (String key : field.split("\\.")) {
+            if (!value.isDocument()) {
+                return BsonNull.VALUE;
+            }
+            value = value.asDocument().get(key, BsonNull.VALUE);
+        }
+        return value;
+    }
+
+    /**
+     * Utility method which maps numeric values, including those of embedded documents, onto a single representation
+     * so that values which the server considers equal, such as 5, 5L and 5.0, are also equal in memory.
+     *
+     * @param value the value to be normalized.
+     * @return the normalized value.
+     */
+    public static BsonValue normalize(BsonValue value) {
+        if (value.isInt32() || value.isInt64()) {
+            return new BsonInt64(value.asNumber().longValue());
+        }
+        if (value.isDouble()) {
+            double doubleValue = value.asDouble().getValue();
+            if (doubleValue == Math.rint(doubleValue) && Math.abs(doubleValue) < Long.MAX_VALUE) {
+                return new BsonInt64((long) doubleValue);
+            }
+            return new BsonDouble(doubleValue);
+        }
+        if (value.isDocument()) {
+            BsonDocument normalizedDocument = new BsonDocument();
+            value.asDocument().forEach((key, fieldValue) -> normalizedDocument.append(key, normalize(fieldValue)));
+            return normalizedDocument;
+        }
+        return value;
+    }
+
+    /**
+     * Utility method which converts a Siddhi runtime value to its BSON representation according to the attribute type.
+     *
+     * @param value the runtime value to be converted.
+     * @param type  the Siddhi type of the value.
+     * @return BsonValue.
+     */
+    public static BsonValue toBsonValue(Object value, Attribute.Type type) {
+        if (value == null) {
+            return BsonNull.VALUE;
+        }
+        switch (type) {
+            case STRING:
+                return new BsonString(value.toString());
+            case INT:
+                return new BsonInt32(((Number) value).intValue());
+            case LONG:
+                return new BsonInt64(((Number) value).longValue());
+            case FLOAT:
+            case DOUBLE:
+                return new BsonDouble(((Number) value).doubleValue());
+            case BOOL:
+                return BsonBoolean.valueOf((Boolean) value);
+            default:
+                return new Document(BSON_VALUE_KEY, value)
+                        .toBsonDocument(BsonDocument.class, MongoClient.getDefaultCodecRegistry())
+                        .get(BSON_VALUE_KEY);
+        }
+    }
+
+    /**
+     * Utility method which can be used to read a positive numeric element of an annotation.
+     *
+     * @param annotation   the annotation which contains the element.
+     * @param elementName  the name of the element to be read.
+     * @param defaultValue the value to be used when the element is not present.
+     * @return the value of the element.
+     * @throws MongoTableException when the element does not contain a positive number.
+     */
+    public static long extractPositiveLong(Annotation annotation, String elementName, String defaultValue) {
+        String value = annotation.getElement(elementName);
+        if (isEmpty(value)) {
+            value = defaultValue;
+        }
+        try {
+            long parsedValue = Long.parseLong(value.trim());
+            if (parsedValue > 0) {
+                return parsedValue;
+            }
+        } catch (NumberFormatException e) {
+            throw new MongoTableException("Annotation '" + annotation.getName() + "' contains illegal value for '" +
+                    elementName + "' as '" + value + "'. Please check your query and try again.", e);
+        }
+        throw new MongoTableException("Annotation '" + annotation.getName() + "' contains illegal value for '" +
+                elementName + "' as '" + value + "'. The value should be a positive number. Please check your " +
+                "query and try again.");
     }
-}
 
+    /**
+     * Utility method which can be used to read a time span element of an annotation, given as a positive number of
+     * milliseconds or as a number followed by a unit, such as '30 sec' or '1 min'.
+     *
+     * @param annotation   the annotation which contains the element.
+     * @param elementName  the name of the element to be read.
+     * @param defaultValue the value to be used when the element is not present.
+     * @return the time span in milliseconds.
+     * @throws MongoTableException when the element does not contain a positive time span.
+     */
+    public static long extractTimeSpan(Annotation annotation, String elementName, String defaultValue) {
+        String value = annotation.getElement(elementName);
+        if (isEmpty(value)) {
+            value = defaultValue;
+        }
+        Matcher matcher = TIME_SPAN_PATTERN.matcher(value.trim());
+        if (matcher.matches()) {
+            long amount = Long.parseLong(matcher.group(1));
+            TimeUnit unit = matcher.group(2) == null ? TimeUnit.MILLISECONDS
+                    : TIME_UNITS.get(matcher.group(2).toLowerCase(Locale.ENGLISH));
+            if (amount > 0 && unit != null) {
+                return unit.toMillis(amount);
+            }
+        }
+        throw new MongoTableException("Annotation '" + annotation.getName() + "' contains illegal value for '" +
+                elementName + "' as '" + value + "'. The value should be a positive time span such as '30 sec' or " +
+                "'1 min'. Please check your query and try again.");
+    }
+
+    /**
+     * Utility method which can be used to check if a given string instance is null or empty.
+     *
+     * @param field the string instance to be checked.
+     * @return true if the field is null or empty.
+     */
+    public static boolean isEmpty(String field) {
+        return (field == null || field.trim().length() == 0);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb.util;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Denotes a typed slot in a compiled condition template which is filled with a stream variable at runtime.
+ * The slot is addressed by the path of document keys and array indices leading to it from the template root.
+ * Placeholders are immutable, and only ever write into copies of the template.
+ */
+public class Placeholder {
+    private final Object[] path;
+    private final Attribute variable;
+
+    public Placeholder(Object[] path, Attribute variable) {
+        this.path = path;
+        this.variable = variable;
+    }
+
+    public Object[] getPath() {
+        return path.clone();
+    }
+
+    public Attribute getVariable() {
+        return variable;
+    }
+
+    /**
+     * Method which writes the runtime value of the stream variable into the given copy of the condition template.
+     *
+     * @param condition             a copy of the template this placeholder was collected from.
+     * @param conditionParameterMap the map which contains the runtime value(s) for the condition.
+     */
+    public void bind(BsonDocument condition, Map<String, Object> conditionParameterMap) {
+        BsonValue value = this.getValue(conditionParameterMap);
+        BsonValue container = condition;
+        int last = this.path.length - 1;
+        for (int i = 0; i < last; i++) {
+            container = step(container, this.path[i]);
+        }
+        if (this.path[last] instanceof Integer) {
+            container.asArray().set((Integer) this.path[last], value);
+        } else {
+            container.asDocument().put((String) this.path[last], value);
+        }
+    }
+
+    /**
+     * Method which checks whether this placeholder is the value of an equality on a field, e.g. {symbol: 'IBM'} or
+     * {symbol: {$eq: 'IBM'}}, which is held by the filter itself or by the operands of '$and' and '$or' operators only.
+     * The documents matched by any of a batch of such equalities are matched by a single '$in' of their values.
+     *
+     * @return true if the placeholder is the value of an equality which can be bound to a list of values.
+     */
+    public boolean isEqualityValue() {
+        int fieldIndex = MongoTableConstants.MONGO_COMPARE_EQUAL.equals(this.path[this.path.length - 1]) ?
+                this.path.length - 2 : this.path.length - 1;
+        if (fieldIndex < 0 || !(this.path[fieldIndex] instanceof String)
+                || ((String) this.path[fieldIndex]).startsWith("$")) {
+            return false;
+        }
+        for (int i = 0; i < fieldIndex; i += 2) {
+            boolean isLogicalOperator = MongoTableConstants.MONGO_AND.equals(this.path[i])
+                    || MongoTableConstants.MONGO_OR.equals(this.path[i]);
+            if (!isLogicalOperator || i + 1 >= fieldIndex || !(this.path[i + 1] instanceof Integer)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method which replaces the equality holding this placeholder with an '$in' of the distinct runtime values of the
+     * stream variable in a batch of condition parameter maps, so that the equality is bound once for the whole batch.
+     *
+     * @param condition              a copy of the template this placeholder was collected from.
+     * @param conditionParameterMaps the maps which contain the runtime value(s) for the condition.
+     */
+    public void bindAll(BsonDocument condition, List<Map<String, Object>> conditionParameterMaps) {
+        int fieldIndex = MongoTableConstants.MONGO_COMPARE_EQUAL.equals(this.path[this.path.length - 1]) ?
+                this.path.length - 2 : this.path.length - 1;
+        BsonValue container = condition;
+        for (int i = 0; i < fieldIndex; i++) {
+            container = step(container, this.path[i]);
+        }
+        BsonArray values = new BsonArray();
+        conditionParameterMaps.stream().map(this::getValue).distinct().forEach(values::add);
+        container.asDocument().put((String) this.path[fieldIndex],
+                new BsonDocument(MongoTableConstants.MONGO_IN, values));
+    }
+
+    /**
+     * Method which returns the runtime value of the stream variable.
+     *
+     * @param conditionParameterMap the map which contains the runtime value(s) for the condition.
+     * @return the BSON representation of the value.
+     */
+    public BsonValue getValue(Map<String, Object> conditionParameterMap) {
+        return MongoTableUtils.toBsonValue(conditionParameterMap.get(this.variable.getName()),
+                this.variable.getType());
+    }
+
+    private static BsonValue step(BsonValue container, Object key) {
+        if (key instanceof Integer) {
+            return container.asArray().get((Integer) key);
+        }
+        return container.asDocument().get(key);
+    }
+}
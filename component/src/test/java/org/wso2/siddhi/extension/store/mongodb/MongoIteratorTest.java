@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import com.mongodb.Block;
+import com.mongodb.Function;
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.siddhi.extension.store.mongodb.exception.MongoTableException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class MongoIteratorTest {
+    private static final Logger log = Logger.getLogger(MongoIteratorTest.class);
+
+    @Test
+    public void iteratorTest1() throws IOException {
+        log.info("iteratorTest1 - Prefetched documents are read in order, and the cursor is closed once exhausted");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            DocumentIterable documents = new DocumentIterable(10);
+            MongoIterator iterator = new MongoIterator(documents, 0, executor, 2, TimeUnit.SECONDS.toMillis(5));
+
+            List<Object> symbols = new ArrayList<>();
+            while (iterator.hasNext()) {
+                symbols.add(iterator.next()[0]);
+            }
+            iterator.close();
+            Assert.assertEquals(symbols.size(), 10, "Prefetched documents were lost");
+            Assert.assertEquals(symbols.get(9), "SYMBOL9", "Prefetched documents were reordered");
+            Assert.assertTrue(documents.cursorClosed, "The exhausted cursor was not closed");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void iteratorTest2() throws InterruptedException, ExecutionException, TimeoutException {
+        log.info("iteratorTest2 - An iterator which is neither read nor closed is abandoned after the idle timeout");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            DocumentIterable documents = new DocumentIterable(10);
+            MongoIterator iterator = new MongoIterator(documents, 0, executor, 2, 200);
+            Assert.assertEquals(iterator.next()[0], "SYMBOL0", "The first document was not prefetched");
+
+            executor.submit(() -> null).get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(documents.cursorClosed, "The cursor of the abandoned iterator was not closed");
+            try {
+                iterator.next();
+                Assert.fail("An abandoned iterator was read further");
+            } catch (MongoTableException e) {
+                log.info("Reading the abandoned iterator failed as expected due to " + e.getMessage());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A MongoIterable over generated documents, which records whether its cursor was closed.
+     */
+    private static class DocumentIterable implements MongoIterable<Object[]> {
+        private int documentCount;
+        private volatile boolean cursorClosed;
+
+        DocumentIterable(int documentCount) {
+            this.documentCount = documentCount;
+        }
+
+        @Override
+        public MongoCursor<Object[]> iterator() {
+            return new MongoCursor<Object[]>() {
+                private int position;
+
+                @Override
+                public void close() {
+                    cursorClosed = true;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return this.position < documentCount;
+                }
+
+                @Override
+                public Object[] next() {
+                    return new Object[]{"SYMBOL" + this.position++, 55.6F, 100L};
+                }
+
+                @Override
+                public Object[] tryNext() {
+                    return this.hasNext() ? this.next() : null;
+                }
+
+                @Override
+                public ServerCursor getServerCursor() {
+                    return null;
+                }
+
+                @Override
+                public ServerAddress getServerAddress() {
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public Object[] first() {
+            Iterator<Object[]> documents = this.iterator();
+            return documents.hasNext() ? documents.next() : null;
+        }
+
+        @Override
+        public <U> MongoIterable<U> map(Function<Object[], U> mapper) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void forEach(Block<? super Object[]> block) {
+            this.iterator().forEachRemaining(block::apply);
+        }
+
+        @Override
+        public <A extends Collection<? super Object[]>> A into(A target) {
+            this.iterator().forEachRemaining(target::add);
+            return target;
+        }
+
+        @Override
+        public MongoIterable<Object[]> batchSize(int batchSize) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import com.mongodb.MongoClient;
+import org.apache.log4j.Logger;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.ValueCodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.types.ObjectId;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoPrimaryKey;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class MongoRecordCodecTest {
+    private static final Logger log = Logger.getLogger(MongoRecordCodecTest.class);
+
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("symbol", Attribute.Type.STRING),
+            new Attribute("count", Attribute.Type.INT),
+            new Attribute("volume", Attribute.Type.LONG),
+            new Attribute("price", Attribute.Type.FLOAT),
+            new Attribute("average", Attribute.Type.DOUBLE),
+            new Attribute("active", Attribute.Type.BOOL),
+            new Attribute("details", Attribute.Type.OBJECT));
+
+    @Test
+    public void recordCodecTest1() {
+        log.info("recordCodecTest1 - Encode and decode a record holding every attribute type");
+        MongoRecordCodec codec = new MongoRecordCodec(ATTRIBUTES, MongoClient.getDefaultCodecRegistry());
+        Object[] record = {"WSO2", 10, 100L, 55.6F, 55.65, true, new Document("exchange", "NYSE")};
+
+        BsonDocument document = encode(codec, record);
+        Assert.assertEquals(document, BsonDocument.parse("{symbol: 'WSO2', count: 10, " +
+                        "volume: {$numberLong: '100'}, price: " + (double) 55.6F + ", average: 55.65, active: true, " +
+                        "details: {exchange: 'NYSE'}}"),
+                "The record was not encoded into a field per attribute");
+        Object[] decodedRecord = decode(codec, document);
+        Assert.assertEquals(decodedRecord, record, "The decoded record differs from the encoded one");
+        Assert.assertTrue(decodedRecord[3] instanceof Float, "A FLOAT attribute was not decoded as a Float");
+    }
+
+    @Test
+    public void recordCodecTest2() {
+        log.info("recordCodecTest2 - Encode and decode null values, and decode missing fields as null");
+        MongoRecordCodec codec = new MongoRecordCodec(ATTRIBUTES, MongoClient.getDefaultCodecRegistry());
+        Object[] record = {"WSO2", null, null, null, null, null, null};
+
+        BsonDocument document = encode(codec, record);
+        Assert.assertEquals(document.get("volume"), BsonNull.VALUE, "A null value was not encoded as null");
+        Assert.assertEquals(decode(codec, document), record, "Null values were not decoded as null");
+        Assert.assertEquals(decode(codec, BsonDocument.parse("{symbol: 'WSO2'}")), record,
+                "Missing fields were not decoded as null");
+    }
+
+    @Test
+    public void recordCodecTest3() {
+        log.info("recordCodecTest3 - Skip extra fields, and convert numbers to the type of the attribute");
+        MongoRecordCodec codec = new MongoRecordCodec(ATTRIBUTES, MongoClient.getDefaultCodecRegistry());
+        BsonDocument document = BsonDocument.parse("{_id: {$oid: '5a1d2c3b4e5f6a7b8c9d0e1f'}, symbol: 'WSO2', " +
+                "count: {$numberLong: '10'}, volume: 100, price: 55.5, average: 55, extra: [1, 2], active: false}");
+
+        Assert.assertEquals(decode(codec, document), new Object[]{"WSO2", 10, 100L, 55.5F, 55.0, false, null},
+                "The fields were not decoded into the attributes");
+    }
+
+    @Test
+    public void recordCodecTest4() {
+        log.info("recordCodecTest4 - Decode arrays and values of types without a codec into OBJECT attributes");
+        MongoRecordCodec codec = new MongoRecordCodec(ATTRIBUTES, MongoClient.getDefaultCodecRegistry());
+        ObjectId objectId = new ObjectId();
+
+        Assert.assertEquals(decode(codec, new BsonDocument("details", new BsonArray(Arrays.asList(
+                new BsonInt32(1), new BsonString("WSO2"), BsonDocument.parse("{exchange: 'NYSE'}"),
+                new BsonArray(Arrays.asList(new BsonInt64(2L), BsonNull.VALUE))))))[6],
+                Arrays.asList(1, "WSO2", new Document("exchange", "NYSE"), Arrays.asList(2L, null)),
+                "An array was not decoded into a List");
+        Assert.assertEquals(decode(codec, new BsonDocument("details", new BsonObjectId(objectId)))[6], objectId,
+                "An ObjectId was not decoded with the codec of its type");
+        MongoRecordCodec valueCodec = new MongoRecordCodec(ATTRIBUTES,
+                CodecRegistries.fromProviders(new ValueCodecProvider()));
+        Assert.assertEquals(decode(valueCodec, BsonDocument.parse("{details: {exchange: 'NYSE'}}"))[6],
+                BsonDocument.parse("{exchange: 'NYSE'}"), "A value of a type without a codec was not decoded");
+        Assert.assertEquals(decode(codec, new BsonDocument("count", new BsonString("10")))[1], "10",
+                "A value which does not match the type of its attribute was not decoded");
+    }
+
+    @Test
+    public void recordCodecTest5() {
+        log.info("recordCodecTest5 - Encode and decode a single attribute primary key stored as '_id'");
+        MongoRecordCodec codec = new MongoRecordCodec(ATTRIBUTES, new MongoPrimaryKey(Arrays.asList("symbol")),
+                MongoClient.getDefaultCodecRegistry());
+        Object[] record = {"WSO2", 10, 100L, 55.5F, 55.65, true, null};
+
+        BsonDocument document = encode(codec, record);
+        Assert.assertEquals(document.get("_id"), new BsonString("WSO2"), "The key was not encoded as '_id'");
+        Assert.assertFalse(document.containsKey("symbol"), "The key attribute was encoded in a field of its own");
+        Assert.assertEquals(decode(codec, document), record, "The key was not decoded from '_id'");
+    }
+
+    @Test
+    public void recordCodecTest6() {
+        log.info("recordCodecTest6 - Encode and decode a composite primary key stored as '_id'");
+        MongoRecordCodec codec = new MongoRecordCodec(ATTRIBUTES, new MongoPrimaryKey(Arrays.asList("symbol",
+                "price")), MongoClient.getDefaultCodecRegistry());
+        Object[] record = {"WSO2", 10, 100L, 55.5F, 55.65, true, null};
+
+        BsonDocument document = encode(codec, record);
+        Assert.assertEquals(document.get("_id"), new BsonDocument("symbol", new BsonString("WSO2"))
+                .append("price", new BsonDouble(55.5)), "The composite key was not encoded as '_id'");
+        Assert.assertEquals(decode(codec, document), record, "The composite key was not decoded from '_id'");
+
+        document.put("_id", new BsonDocument("price", new BsonDouble(55.5)).append("volume", new BsonInt64(200L)));
+        Assert.assertEquals(decode(codec, document), new Object[]{null, 10, 100L, 55.5F, 55.65, true, null},
+                "The fields of '_id' which are not key attributes were decoded, or a missing key was not null");
+        document.put("_id", new BsonString("WSO2"));
+        Assert.assertEquals(decode(codec, document)[0], null, "A composite key was decoded from a plain '_id'");
+    }
+
+    private static BsonDocument encode(MongoRecordCodec codec, Object[] record) {
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), record, EncoderContext.builder().build());
+        return document;
+    }
+
+    private static Object[] decode(MongoRecordCodec codec, BsonDocument document) {
+        return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+}
@@ -87,4 +87,15 @@ public class MongoTableTestUtils {
         return indexesList;
     }
 
+    public static Document getDocument(String query) throws MongoException {
+        Document document = null;
+        try (MongoClient mongoClient = new MongoClient(new MongoClientURI(CONNECTIONURI))) {
+            document = mongoClient.getDatabase(DATABASENAME).getCollection(COLLECTIONNAME)
+                    .find(Document.parse(query)).first();
+        } catch (MongoException e) {
+            log.debug("Getting document from DB table failed due to " + e.getMessage(), e);
+        }
+        return document;
+    }
+
 }
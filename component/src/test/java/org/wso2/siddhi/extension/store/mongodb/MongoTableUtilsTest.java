@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import org.apache.log4j.Logger;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.siddhi.extension.store.mongodb.util.MongoTableUtils;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class MongoTableUtilsTest {
+    private static final Logger log = Logger.getLogger(MongoTableUtilsTest.class);
+
+    @Test
+    public void splitRangesTest1() {
+        log.info("splitRangesTest1 - Split a sample into ranges, the first one also holding values of other types");
+        List<BsonValue> sampleValues = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            sampleValues.add(new BsonInt32(i));
+        }
+
+        Assert.assertEquals(MongoTableUtils.splitRanges("_id", sampleValues, 4), Arrays.asList(
+                BsonDocument.parse("{_id: {$not: {$gte: 5}}}"),
+                BsonDocument.parse("{_id: {$gte: 5, $lt: 10}}"),
+                BsonDocument.parse("{_id: {$gte: 10, $lt: 15}}"),
+                BsonDocument.parse("{_id: {$gte: 15}}")), "The sample was not split into even ranges");
+    }
+
+    @Test
+    public void splitRangesTest2() {
+        log.info("splitRangesTest2 - Drop duplicate bounds of a sample with repeated values");
+        List<BsonValue> sampleValues = Arrays.asList(new BsonInt32(1), new BsonInt32(1), new BsonInt32(1),
+                new BsonInt32(1), new BsonInt32(1), new BsonInt32(1), new BsonInt32(2), new BsonInt32(2));
+
+        Assert.assertEquals(MongoTableUtils.splitRanges("_id", sampleValues, 4), Arrays.asList(
+                BsonDocument.parse("{_id: {$not: {$gte: 1}}}"),
+                BsonDocument.parse("{_id: {$gte: 1, $lt: 2}}"),
+                BsonDocument.parse("{_id: {$gte: 2}}")), "Duplicate bounds were not dropped");
+    }
+
+    @Test
+    public void splitRangesTest3() {
+        log.info("splitRangesTest3 - Refuse to split a sample of mixed types, or an empty sample");
+        Assert.assertNull(MongoTableUtils.splitRanges("_id", Arrays.asList(new BsonInt32(1), new BsonInt32(2),
+                new BsonString("WSO2"), new BsonString("IBM")), 2), "A sample of mixed types was split");
+        Assert.assertNull(MongoTableUtils.splitRanges("_id", Collections.emptyList(), 2),
+                "An empty sample was split");
+        Assert.assertEquals(MongoTableUtils.splitRanges("_id", Arrays.asList(new BsonInt32(1), new BsonInt64(2L),
+                new BsonInt32(3), new BsonInt64(4L)), 2), Arrays.asList(
+                BsonDocument.parse("{_id: {$not: {$gte: 3}}}"),
+                BsonDocument.parse("{_id: {$gte: 3}}")), "A sample of numbers of different types was not split");
+    }
+
+    @Test
+    public void getFieldNamesTest1() {
+        log.info("getFieldNamesTest1 - Collect the fields of query operators and of '$expr' field paths");
+        BsonDocument filter = BsonDocument.parse("{$and: [{symbol: {$in: ['WSO2', 'IBM']}}, " +
+                "{$expr: {$gt: ['$volume', {$multiply: ['$_id.price', {$literal: '$notAField'}]}]}}, " +
+                "{'_id.symbol': '$alsoNotAField'}]}");
+
+        Assert.assertEquals(MongoTableUtils.getFieldNames(filter),
+                new HashSet<>(Arrays.asList("symbol", "volume", "_id.price", "_id.symbol")),
+                "The fields of the filter were not collected");
+    }
+
+    @Test
+    public void buildProjectionTest1() {
+        log.info("buildProjectionTest1 - Project every attribute, excluding '_id' unless it is an attribute");
+        Assert.assertEquals(MongoTableUtils.buildProjection(Arrays.asList(
+                new Attribute("symbol", Attribute.Type.STRING),
+                new Attribute("price", Attribute.Type.FLOAT),
+                new Attribute("volume", Attribute.Type.LONG))),
+                BsonDocument.parse("{symbol: 1, price: 1, volume: 1, _id: 0}"),
+                "Every attribute was not projected, or '_id' was not excluded");
+        Assert.assertEquals(MongoTableUtils.buildProjection(Arrays.asList(
+                new Attribute("_id", Attribute.Type.STRING),
+                new Attribute("volume", Attribute.Type.LONG))),
+                BsonDocument.parse("{_id: 1, volume: 1}"), "The '_id' attribute was not projected");
+    }
+
+    @Test
+    public void buildProbeProjectionTest1() {
+        log.info("buildProbeProjectionTest1 - Project only an indexed field of the filter, or else only '_id'");
+        Set<String> indexedFields = new HashSet<>(Arrays.asList("volume", "_id"));
+        Assert.assertEquals(MongoTableUtils.buildProbeProjection(BsonDocument.parse("{$and: [{symbol: 'WSO2'}, " +
+                "{volume: {$gt: 100}}]}"), indexedFields), BsonDocument.parse("{volume: 1, _id: 0}"),
+                "The indexed field of the filter was not projected alone");
+        Assert.assertEquals(MongoTableUtils.buildProbeProjection(BsonDocument.parse("{_id: 'WSO2'}"),
+                indexedFields), BsonDocument.parse("{_id: 1}"), "The '_id' of the filter was not projected");
+        Assert.assertEquals(MongoTableUtils.buildProbeProjection(BsonDocument.parse("{$or: [{volume: 100}, " +
+                "{symbol: 'WSO2'}]}"), indexedFields), BsonDocument.parse("{_id: 1}"),
+                "A field of a disjunction was projected, although documents can match without it");
+        Assert.assertEquals(MongoTableUtils.buildProbeProjection(BsonDocument.parse("{symbol: 'WSO2', " +
+                "price: {$lt: 55.6}}"), indexedFields), BsonDocument.parse("{_id: 1}"),
+                "A field without an index was projected");
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.siddhi.extension.store.mongodb.exception.MongoTableException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MongoWriteBehindBufferTest {
+    private static final Logger log = Logger.getLogger(MongoWriteBehindBufferTest.class);
+
+    @Test
+    public void writeBehindBufferTest1() throws InterruptedException {
+        log.info("writeBehindBufferTest1 - Producers are blocked while the write-behind buffer is full");
+        CountDownLatch writerReleased = new CountDownLatch(1);
+        List<WriteModel<Object[]>> writtenModels = new CopyOnWriteArrayList<>();
+        MongoWriteBehindBuffer buffer = new MongoWriteBehindBuffer("FooTable", batch -> {
+            try {
+                writerReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writtenModels.addAll(batch);
+        }, new MongoLoggingWriteErrorSink(), 1, 1, 10);
+        buffer.start();
+
+        buffer.enqueue(Collections.singletonList(insertOf("WSO2")));
+        Thread.sleep(200);
+        buffer.enqueue(Collections.singletonList(insertOf("IBM")));
+        Thread producer = new Thread(() -> buffer.enqueue(Collections.singletonList(insertOf("ORACLE"))));
+        producer.start();
+        producer.join(500);
+        Assert.assertTrue(producer.isAlive(), "Producer was not blocked while the buffer was full");
+
+        writerReleased.countDown();
+        producer.join(5000);
+        Assert.assertFalse(producer.isAlive(), "Producer was not released after the buffer was drained");
+        buffer.shutdown();
+        Assert.assertEquals(writtenModels.size(), 3, "Queued operations were not written");
+    }
+
+    @Test
+    public void writeBehindBufferTest2() {
+        log.info("writeBehindBufferTest2 - Queued operations are flushed when the write-behind buffer is shut down");
+        List<WriteModel<Object[]>> writtenModels = new CopyOnWriteArrayList<>();
+        MongoWriteBehindBuffer buffer = new MongoWriteBehindBuffer("FooTable", writtenModels::addAll,
+                new MongoLoggingWriteErrorSink(), 100, 100, TimeUnit.MINUTES.toMillis(1));
+        buffer.start();
+
+        for (int i = 0; i < 5; i++) {
+            buffer.enqueue(Collections.singletonList(insertOf("WSO2")));
+        }
+        buffer.shutdown();
+        Assert.assertEquals(writtenModels.size(), 5, "Queued operations were not flushed on shutdown");
+    }
+
+    @Test
+    public void writeBehindBufferTest3() throws InterruptedException {
+        log.info("writeBehindBufferTest3 - A batch which fails otherwise is handed to the write error sink");
+        List<WriteModel<Object[]>> writtenModels = new CopyOnWriteArrayList<>();
+        List<WriteModel<Object[]>> failedModels = new CopyOnWriteArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+        MongoWriteBehindBuffer buffer = new MongoWriteBehindBuffer("FooTable", batch -> {
+            if ("FAIL".equals(((InsertOneModel<Object[]>) batch.get(0)).getDocument()[0])) {
+                attempts.incrementAndGet();
+                throw new MongoTableException("Simulated failure of the bulk writer");
+            }
+            writtenModels.addAll(batch);
+        }, collectingSink(failedModels), 10, 1, 10);
+        buffer.start();
+
+        buffer.enqueue(Collections.singletonList(insertOf("FAIL")));
+        Thread.sleep(200);
+        buffer.enqueue(Collections.singletonList(insertOf("WSO2")));
+        buffer.shutdown();
+        Assert.assertEquals(writtenModels.size(), 1, "The writer did not survive a failed batch");
+        Assert.assertEquals(failedModels.size(), 1, "The failed batch was not handed to the write error sink");
+        Assert.assertEquals(attempts.get(), 1, "A batch which can not succeed was retried");
+    }
+
+    @Test
+    public void writeBehindBufferTest4() {
+        log.info("writeBehindBufferTest4 - A batch which fails as the server is unreachable is retried");
+        List<WriteModel<Object[]>> writtenModels = new CopyOnWriteArrayList<>();
+        List<WriteModel<Object[]>> failedModels = new CopyOnWriteArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+        MongoWriteBehindBuffer buffer = new MongoWriteBehindBuffer("FooTable", batch -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new MongoSocketReadException("Simulated loss of the connection", new ServerAddress());
+            }
+            writtenModels.addAll(batch);
+        }, collectingSink(failedModels), 10, 10, 10);
+        buffer.start();
+
+        buffer.enqueue(Arrays.asList(insertOf("WSO2"), insertOf("IBM")));
+        buffer.shutdown();
+        Assert.assertEquals(attempts.get(), 3, "The failed batch was not retried");
+        Assert.assertEquals(writtenModels.size(), 2, "The retried batch was not written");
+        Assert.assertTrue(failedModels.isEmpty(), "A batch which was written was handed to the write error sink");
+    }
+
+    @Test
+    public void writeBehindBufferTest5() {
+        log.info("writeBehindBufferTest5 - A batch which keeps failing is handed to the write error sink");
+        List<WriteModel<Object[]>> failedModels = new CopyOnWriteArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+        MongoWriteBehindBuffer buffer = new MongoWriteBehindBuffer("FooTable", batch -> {
+            attempts.incrementAndGet();
+            throw new MongoTimeoutException("Simulated unreachable server");
+        }, collectingSink(failedModels), 10, 10, 10);
+        buffer.start();
+
+        buffer.enqueue(Arrays.asList(insertOf("WSO2"), insertOf("IBM")));
+        buffer.shutdown();
+        Assert.assertTrue(attempts.get() > 1, "The failed batch was not retried");
+        Assert.assertEquals(failedModels.size(), 2, "The failed batch was not handed to the write error sink");
+    }
+
+    private static MongoWriteErrorSink collectingSink(List<WriteModel<Object[]>> failedModels) {
+        return (failedModel, writeError) -> failedModels.add(failedModel);
+    }
+
+    private static WriteModel<Object[]> insertOf(String symbol) {
+        return new InsertOneModel<>(new Object[]{symbol, 55.6F, 100L});
+    }
+}
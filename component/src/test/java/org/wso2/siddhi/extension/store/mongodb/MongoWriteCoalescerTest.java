@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.siddhi.extension.store.mongodb;
+
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.apache.log4j.Logger;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MongoWriteCoalescerTest {
+    private static final Logger log = Logger.getLogger(MongoWriteCoalescerTest.class);
+
+    private MongoWriteCoalescer coalescer = new MongoWriteCoalescer(Collections.singleton("symbol"),
+            record -> new BsonDocument("symbol", new BsonString((String) record[0]))
+                    .append("price", new BsonDouble((Double) record[1]))
+                    .append("volume", new BsonInt64((Long) record[2])));
+
+    @Test
+    public void writeCoalescerTest1() {
+        log.info("writeCoalescerTest1 - Merge '$set' updates of the same key with the '$setOnInsert' of an upsert");
+        List<WriteModel<Object[]>> coalescedModels = this.coalescer.coalesce(Arrays.asList(
+                update("WSO2", new Document("$set", new Document("price", 55.6)), false),
+                update("IBM", new Document("$set", new Document("price", 75.6)), false),
+                update("WSO2", new Document("$set", new Document("price", 57.6))
+                        .append("$setOnInsert", new Document("volume", 100L)), true),
+                update("WSO2", new Document("$set", new Document("volume", 200L)), false),
+                update("ORACLE", new Document("$set", new Document("price", 45.6))
+                        .append("$setOnInsert", new Document("volume", 100L)), true),
+                update("ORACLE", new Document("$set", new Document("price", 47.6)), false)));
+
+        Assert.assertEquals(coalescedModels.size(), 3, "Updates of the same key were not merged");
+        assertUpdate(coalescedModels.get(0), "WSO2",
+                new Document("$set", new Document("price", 57.6).append("volume", 200L)), true);
+        assertUpdate(coalescedModels.get(1), "IBM", new Document("$set", new Document("price", 75.6)), false);
+        assertUpdate(coalescedModels.get(2), "ORACLE", new Document("$set", new Document("price", 47.6))
+                .append("$setOnInsert", new Document("volume", 100L)), true);
+    }
+
+    @Test
+    public void writeCoalescerTest2() {
+        log.info("writeCoalescerTest2 - A delete cancels the insert of the same key before it");
+        List<WriteModel<Object[]>> coalescedModels = this.coalescer.coalesce(Arrays.asList(
+                new InsertOneModel<>(new Object[]{"WSO2", 55.6, 100L}),
+                new InsertOneModel<>(new Object[]{"IBM", 75.6, 100L}),
+                new DeleteOneModel<>(new BsonDocument("symbol", new BsonString("WSO2")))));
+
+        Assert.assertEquals(coalescedModels.size(), 2, "The insert was not cancelled by the delete");
+        Assert.assertEquals(((InsertOneModel<Object[]>) coalescedModels.get(0)).getDocument()[0], "IBM",
+                "The insert of another key was cancelled");
+        Assert.assertTrue(coalescedModels.get(1) instanceof DeleteOneModel, "The delete was dropped");
+    }
+
+    @Test
+    public void writeCoalescerTest3() {
+        log.info("writeCoalescerTest3 - Updates of the same key are not merged across a model without a key");
+        WriteModel<Object[]> barrier = new DeleteManyModel<>(BsonDocument.parse("{price: {$gt: 56.0}}"));
+        List<WriteModel<Object[]>> coalescedModels = this.coalescer.coalesce(Arrays.asList(
+                update("WSO2", new Document("$set", new Document("price", 55.6)), false),
+                barrier,
+                update("WSO2", new Document("$set", new Document("price", 57.6)), false)));
+
+        Assert.assertEquals(coalescedModels.size(), 3, "Updates were merged across the barrier");
+        assertUpdate(coalescedModels.get(0), "WSO2", new Document("$set", new Document("price", 55.6)), false);
+        Assert.assertSame(coalescedModels.get(1), barrier, "The barrier was moved");
+        assertUpdate(coalescedModels.get(2), "WSO2", new Document("$set", new Document("price", 57.6)), false);
+    }
+
+    @Test
+    public void writeCoalescerTest4() {
+        log.info("writeCoalescerTest4 - '$inc' updates of the same key are not merged");
+        List<WriteModel<Object[]>> coalescedModels = this.coalescer.coalesce(Arrays.asList(
+                update("WSO2", new Document("$inc", new Document("volume", 100L)), false),
+                update("WSO2", new Document("$inc", new Document("volume", 200L)), false),
+                update("WSO2", new Document("$set", new Document("price", 57.6)), false)));
+
+        Assert.assertEquals(coalescedModels.size(), 3, "'$inc' updates were merged");
+        assertUpdate(coalescedModels.get(0), "WSO2", new Document("$inc", new Document("volume", 100L)), false);
+        assertUpdate(coalescedModels.get(1), "WSO2", new Document("$inc", new Document("volume", 200L)), false);
+        assertUpdate(coalescedModels.get(2), "WSO2", new Document("$set", new Document("price", 57.6)), false);
+    }
+
+    @Test
+    public void writeCoalescerTest5() {
+        log.info("writeCoalescerTest5 - Pinned models are neither merged nor moved");
+        WriteModel<Object[]> pinnedModel = update("WSO2", new Document("$set", new Document("price", 57.6)), false);
+        MongoWriteCoalescer pinningCoalescer = new MongoWriteCoalescer(Collections.singleton("symbol"),
+                record -> new BsonDocument("symbol", new BsonString((String) record[0])),
+                writeModel -> writeModel == pinnedModel);
+        List<WriteModel<Object[]>> coalescedModels = pinningCoalescer.coalesce(Arrays.asList(
+                update("WSO2", new Document("$set", new Document("price", 55.6)), false),
+                pinnedModel,
+                update("WSO2", new Document("$set", new Document("price", 58.6)), false)));
+
+        Assert.assertEquals(coalescedModels.size(), 3, "A pinned model was merged");
+        Assert.assertSame(coalescedModels.get(1), pinnedModel, "The pinned model was moved");
+    }
+
+    private static WriteModel<Object[]> update(String symbol, Document update, boolean upsert) {
+        return new UpdateOneModel<>(new BsonDocument("symbol", new BsonString(symbol)), update,
+                new UpdateOptions().upsert(upsert));
+    }
+
+    private static void assertUpdate(WriteModel<Object[]> writeModel, String symbol, Document update,
+                                     boolean upsert) {
+        Assert.assertTrue(writeModel instanceof UpdateOneModel, "Expected an update of '" + symbol + "'");
+        UpdateOneModel<Object[]> updateModel = (UpdateOneModel<Object[]>) writeModel;
+        Assert.assertEquals(updateModel.getFilter(), new BsonDocument("symbol", new BsonString(symbol)),
+                "The update targets another key");
+        Assert.assertEquals(updateModel.getUpdate(), update, "The update of '" + symbol + "' differs");
+        Assert.assertEquals(updateModel.getOptions().isUpsert(), upsert,
+                "The upsert option of '" + symbol + "' differs");
+    }
+}